@@ -0,0 +1,120 @@
+/*
+ *    IdleStrategy.java
+ *    Date: Oct 18 2026
+ *
+ *    What a polling loop does when a pass found nothing to do.
+ *
+ *      spin     busy-spin (lowest latency, burns a core)
+ *      yield    Thread.yield()
+ *      backoff  spin, then yield, then park for growing intervals
+ *      park     park for 'maxParkNs' right away.  a loop that can wait
+ *               for its input (e.g. Mailbox.waitMessage()) should do
+ *               that instead, see parks().
+ *
+ *    One instance per polling thread; it keeps the backoff state.
+ *    -DAdoptIdle=<name> picks the strategy of the agents' own message
+ *    loops (see configured()).
+ */
+
+package adopt.common;
+
+import java.util.concurrent.locks.*;
+
+public class IdleStrategy {
+
+  public static final int SPIN = 0;
+  public static final int YIELD = 1;
+  public static final int BACKOFF = 2;
+  public static final int PARK = 3;
+
+  /* backoff: number of idle passes spent spinning, then yielding */
+  public static int maxSpins = 100;
+  public static int maxYields = 100;
+  /* shortest and longest park (ns) */
+  public static long minParkNs = 1000;
+  public static long maxParkNs = 1000000;
+
+  /* -DAdoptIdle: strategy of the agent loops, null for their default */
+  public static String agentIdle = System.getProperty("AdoptIdle");
+
+  int mode;
+  /* consecutive idle passes, and the current park time */
+  int idleCnt = 0;
+  long parkNs = minParkNs;
+
+  public IdleStrategy(int mode){
+    this.mode = mode;
+  }
+
+  /* "spin", "yield", "backoff" or "park"; anything else is backoff */
+  public static IdleStrategy byName(String name){
+    if("spin".equals(name))
+      return new IdleStrategy(SPIN);
+    if("yield".equals(name))
+      return new IdleStrategy(YIELD);
+    if("park".equals(name))
+      return new IdleStrategy(PARK);
+    return new IdleStrategy(BACKOFF);
+  }
+
+  /* the strategy given by -DAdoptIdle, or 'dflt' if there is none */
+  public static IdleStrategy configured(String dflt){
+    if(agentIdle != null && agentIdle.length() > 0)
+      return byName(agentIdle);
+    return byName(dflt);
+  }
+
+  /* should the loop block until its input arrives, rather than call
+     idle()? */
+  public boolean parks(){
+    return mode == PARK;
+  }
+
+  /* called after every pass; 'workCnt' is how much the pass did */
+  public void idle(int workCnt){
+    if(workCnt > 0){
+      reset();
+      return;
+    }
+    idle();
+  }
+
+  /* the last pass did nothing */
+  public void idle(){
+    switch(mode){
+    case SPIN:
+      Thread.onSpinWait();
+      return;
+    case YIELD:
+      Thread.yield();
+      return;
+    case PARK:
+      LockSupport.parkNanos(maxParkNs);
+      return;
+    }
+    idleCnt++;
+    if(idleCnt <= maxSpins)
+      Thread.onSpinWait();
+    else if(idleCnt <= maxSpins + maxYields)
+      Thread.yield();
+    else{
+      LockSupport.parkNanos(parkNs);
+      parkNs = Math.min(parkNs*2, maxParkNs);
+    }
+  }
+
+  /* the last pass did some work */
+  public void reset(){
+    idleCnt = 0;
+    parkNs = minParkNs;
+  }
+
+  public String nameOf(){
+    switch(mode){
+    case SPIN: return "spin";
+    case YIELD: return "yield";
+    case PARK: return "park";
+    }
+    return "backoff";
+  }
+}
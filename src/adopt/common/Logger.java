@@ -15,12 +15,22 @@ import java.util.*;
 
 public class Logger{
   
+  /* -DAdoptAgentLogs=false turns off the per-agent and per-variable
+     log files (one open file each is too many for very large runs) */
+  public static boolean agentLogs = 
+    !"false".equals(System.getProperty("AdoptAgentLogs"));
+
   PrintWriter nLog = null;
 
   public Logger(PrintWriter l){
     nLog = l;
   }
   
+  /* a writer that discards everything, for when logging is off */
+  public static PrintWriter nullWriter(){
+    return new PrintWriter(Writer.nullWriter());
+  }
+
   public void printToLog(String s){
     nLog.print(s);
     nLog.flush();
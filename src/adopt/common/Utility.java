@@ -28,6 +28,9 @@ public class Utility {
 
   public static double THRESHOLD = 0.1;
   public static long starttime =  System.currentTimeMillis();
+  /* if >= 0, the current time (ms) of a simulated clock, used instead
+     of the wall clock by all the Time*() methods below */
+  public static long virtualTime = -1;
 
 
   public static void init(int level){
@@ -44,23 +47,32 @@ public class Utility {
 
   public static String TimeStringMS()
   {
-    long result =  System.currentTimeMillis() - starttime;
+    long result =  TimeMS();
     return new Long(result).toString();
   }
 
   public static long TimeMS()
   {
+    if(virtualTime >= 0)
+      return virtualTime;
     long result =  System.currentTimeMillis() - starttime;
     return result;
   }
 
   public static long TimeSec()
   {
-    long result =  System.currentTimeMillis() - starttime;
+    long result =  TimeMS();
     return result/1000;
   }
 
 
+  /* would Dprint() at this level print anything? (check before
+     building an expensive debug string) */
+  public static boolean Dprinting(int level)
+  {
+    return level < debug_level;
+  }
+
   public static void Dprint(String msg, int level)
   {
     if(level < debug_level)
@@ -13,35 +13,149 @@ import adopt.common.*;
 import java.lang.*;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class Context{
 
-  /* A Context holds a set of variable/value pairs */
+  /* A Context holds a set of variable/value pairs, kept sorted by
+     varID so that lookups are a binary search and the set operations
+     a merge of two sorted lists.  The pairs live in an immutable Data
+     that copies of the Context, and results of set operations that
+     equal one of their arguments, share; changing a Context gives it
+     a new Data. */
 
-  /* val[i] holds value of variable vars[i] */
-  public Vector vars;
-  public Vector vals;
+  static final class Data {
+    /* vars[i] (with varID ids[i]) has the value with domain index
+       vals[i], for i < n.  never changed once built. */
+    final Variable[] vars;
+    final int[] ids;
+    final int[] vals;
+    final int n;
+    /* cached hashCode(), 0 if not computed yet */
+    int hash = 0;
+
+    Data(Variable[] vars, int[] ids, int[] vals, int n){
+      this.vars = vars;
+      this.ids = ids;
+      this.vals = vals;
+      this.n = n;
+    }
+
+    /* same pairs, with the very same Variables */
+    public boolean equals(Object o){
+      if(o == this)
+	return true;
+      if(!(o instanceof Data))
+	return false;
+      Data d = (Data) o;
+      if(d.n != n || d.hashCode() != hashCode())
+	return false;
+      for(int i=0;i<n;i++)
+	if(ids[i] != d.ids[i] || vals[i] != d.vals[i] || vars[i] != d.vars[i])
+	  return false;
+      return true;
+    }
+
+    public int hashCode(){
+      int h = hash;
+      if(h == 0){
+	h = 1;
+	for(int i=0;i<n;i++)
+	  h = 31 * (31 * h + ids[i]) + vals[i];
+	if(h == 0)
+	  h = 1;
+	hash = h;
+      }
+      return h;
+    }
+  }
+
+  static final Data EMPTY = new Data(new Variable[0], new int[0], new int[0], 0);
+
+  /* canonical Data of the Contexts passed to intern().  cleared when
+     it grows past 'internLimit'; that only costs some sharing. */
+  static ConcurrentHashMap interned = new ConcurrentHashMap();
+  public static int internLimit = 1 << 16;
+
+  Data d;
 
   public Context(){
-    vars = new Vector();
-    vals = new Vector();
+    d = EMPTY;
   }
 
+  /* a copy of 'v'.  takes constant time, the copy shares the pairs */
   public Context(Context v){
-    vars = (Vector) v.vars.clone();
-    vals = (Vector) v.vals.clone();
+    d = v.d;
+  }
+
+  Context(Data d){
+    this.d = d;
+  }
+
+  /* build a Context from varIDs and the domain indices of their
+     values, as carried in messages */
+  public static Context fromIDs(Problem p, int[] varIDs, int[] valIdx){
+    Context vw = new Context();
+    for(int i=0;i<varIDs.length;i++)
+      vw.put(p.getVariableFromID(varIDs[i]), valIdx[i]);
+    return vw;
+  }
+
+  /* make this Context share its pairs with every other interned
+     Context holding the same pairs, so that comparing them is an
+     identity check.  returns 'this'. */
+  public Context intern(){
+    Data c = (Data) interned.putIfAbsent(d, d);
+    if(c == null){
+      if(interned.size() > internLimit)
+	interned.clear();
+    }
+    else
+      d = c;
+    return this;
+  }
+
+  /* varIDs of the variables in this Context */
+  public int[] varIDs(){
+    int[] result = new int[d.n];
+    System.arraycopy(d.ids, 0, result, 0, d.n);
+    return result;
+  }
+
+  /* domain indices of the values in this Context */
+  public int[] valueIndices(){
+    int[] result = new int[d.n];
+    System.arraycopy(d.vals, 0, result, 0, d.n);
+    return result;
   }
 
   /* return a new Context that is 'this' set intersect the variables
      in given Context. */
   public Context setIntersection(Context vw){
-    Context result = new Context();
-    for(int i=0;i<vars.size();i++){
-      Variable v = (Variable) vars.elementAt(i);
-      if(vw.valueOf(v) != null)
-	result.addVarToContext(v, valueOf(v));
+    Data a = d, b = vw.d;
+    if(a == b)
+      return new Context(a);
+    Variable[] rvars = new Variable[a.n];
+    int[] rids = new int[a.n];
+    int[] rvals = new int[a.n];
+    int k = 0;
+    int i = 0, j = 0;
+    while(i < a.n && j < b.n){
+      if(a.ids[i] < b.ids[j])
+	i++;
+      else if(a.ids[i] > b.ids[j])
+	j++;
+      else{
+	rvars[k] = a.vars[i];
+	rids[k] = a.ids[i];
+	rvals[k++] = a.vals[i];
+	i++;
+	j++;
+      }
     }
-    return result;
+    if(k == a.n)
+      return new Context(a);
+    return new Context(new Data(rvars, rids, rvals, k));
   }
 
   /* return a new Context that is 'this' set minus the variables
@@ -54,45 +168,85 @@ public class Context{
       System.exit(0);
     }
     
-    Context result = new Context();
-    for(int i=0;i<vars.size();i++){
-      Variable v = (Variable) vars.elementAt(i);
-      if(vw.valueOf(v) == null)
-	result.addVarToContext(v, valueOf(v));
+    Data a = d, b = vw.d;
+    if(b.n == 0)
+      return new Context(a);
+    Variable[] rvars = new Variable[a.n];
+    int[] rids = new int[a.n];
+    int[] rvals = new int[a.n];
+    int k = 0;
+    int j = 0;
+    for(int i=0;i<a.n;i++){
+      while(j < b.n && b.ids[j] < a.ids[i])
+	j++;
+      if(j == b.n || b.ids[j] != a.ids[i]){
+	rvars[k] = a.vars[i];
+	rids[k] = a.ids[i];
+	rvals[k++] = a.vals[i];
+      }
     }
-    return result;
+    return new Context(new Data(rvars, rids, rvals, k));
   }
 
   /* return a new Context that is the set union of 'this' and the 
-     given Context. */
+     given Context.  where both have a variable, the value in the
+     given Context wins. */
   public Context union(Context vw){
-    Context result = new Context(vw);
-
-    for(int i=0;i<vars.size();i++){
-      Variable v = (Variable) vars.elementAt(i);
-      /* if v is not already in result */
-      if(result.valueOf(v) == null)
-	{
-	  result.vars.addElement(v);
-	  result.vals.addElement(vals.elementAt(i));
-	}
+    Data a = d, b = vw.d;
+    if(a == b || a.n == 0)
+      return new Context(b);
+    if(b.n == 0)
+      return new Context(a);
+    int cap = a.n + b.n;
+    Variable[] rvars = new Variable[cap];
+    int[] rids = new int[cap];
+    int[] rvals = new int[cap];
+    int k = 0;
+    /* pairs taken from 'this' */
+    int fromA = 0;
+    int i = 0, j = 0;
+    while(i < a.n || j < b.n){
+      if(j == b.n || (i < a.n && a.ids[i] < b.ids[j])){
+	rvars[k] = a.vars[i];
+	rids[k] = a.ids[i];
+	rvals[k++] = a.vals[i];
+	i++;
+	fromA++;
+      }
+      else{
+	if(i < a.n && a.ids[i] == b.ids[j])
+	  i++;
+	rvars[k] = b.vars[j];
+	rids[k] = b.ids[j];
+	rvals[k++] = b.vals[j];
+	j++;
+      }
     }
-    return result;
+    if(fromA == 0)
+      return new Context(b);
+    return new Context(new Data(rvars, rids, rvals, k));
   }
 
   public int size(){
-    return vars.size();
+    return d.n;
   }
 
-  private int indexOf(Variable v)
+  /* position of 'varID' in d.ids[], or -(insertion point)-1 if it
+     is not in this Context */
+  int indexOf(int varID)
   {
-    int i=0;
-    for(i=0;i<vars.size();i++){
-      Variable v2 = (Variable)vars.elementAt(i);
-      if(v2.equalVar(v))
-	return i;
+    int[] ids = d.ids;
+    int lo = 0, hi = d.n - 1;
+    while(lo <= hi){
+      int mid = (lo + hi) >>> 1;
+      if(ids[mid] < varID)
+	lo = mid + 1;
+      else if(ids[mid] > varID)
+	hi = mid - 1;
+      else
+	return mid;
     }
-    return -1;
+    return -(lo + 1);
   }
 
   /* is 'this' Context a subset of the given one? */
@@ -100,69 +254,137 @@ public class Context{
 
     /* every variable in this Context must have same value in the
        given Context */
-    for(int i=0;i<vars.size();i++){
-      Variable v2 = (Variable) vars.elementAt(i);
-      if( valueOf(v2) != vw.valueOf(v2))
+    Data a = d, b = vw.d;
+    if(a == b)
+      return true;
+    int j = 0;
+    for(int i=0;i<a.n;i++){
+      while(j < b.n && b.ids[j] < a.ids[i])
+	j++;
+      if(j == b.n || b.ids[j] != a.ids[i] || b.vals[j] != a.vals[i])
 	return false;
     }
     return true;
   }
 
   public boolean equals(Context vw){
-    return (subsetOf(vw) && vw.subsetOf(this));
+    if(d == vw.d)
+      return true;
+    return (d.n == vw.d.n && subsetOf(vw));
+  }
+
+  public boolean equals(Object o){
+    return (o instanceof Context) && equals((Context) o);
+  }
+
+  public int hashCode(){
+    return d.hashCode();
   }
 
   /* is 'this' Context compatible with the given one? */
   public boolean compatible(Context vw){
     /* every variable in this Context must have same value in the
        given Context or not exist. */
-    for(int i=0;i<vars.size();i++){
-      Variable v2 = (Variable) vars.elementAt(i);
-      Value val2 = vw.valueOf(v2);
-      if(val2 != null && !valueOf(v2).equal(val2)){
-	return false;
+    Data a = d, b = vw.d;
+    if(a == b)
+      return true;
+    int i = 0, j = 0;
+    while(i < a.n && j < b.n){
+      if(a.ids[i] < b.ids[j])
+	i++;
+      else if(a.ids[i] > b.ids[j])
+	j++;
+      else{
+	if(a.vals[i] != b.vals[j])
+	  return false;
+	i++;
+	j++;
       }
     }
     return true;
   }
 
   public void addVarToContext(Variable v, Value val){
-    int i;
-    i = indexOf(v);
-    if (i == -1 ){
-      vars.add(v);
-      vals.add(val);
+    put(v, domainIndex(v, val));
+  }
+
+  /* a new Context that is 'this' with 'v' set to 'val'; 'this' is
+     not changed */
+  public Context with(Variable v, Value val){
+    Context result = new Context(this);
+    result.put(v, domainIndex(v, val));
+    return result;
+  }
+
+  /* domain index of 'val', which must be in the domain of 'v' */
+  static int domainIndex(Variable v, Value val){
+    Value[] dom = v.domain();
+    for(int i=0;i<dom.length;i++)
+      if(dom[i] == val)
+	return i;
+    int i = v.indexOf(val);
+    if(i < 0){
+      System.out.println("Context: " + val + " is not in the domain of " + v.uniqueNameOf());
+      System.exit(0);
+    }
+    return i;
+  }
+
+  /* set 'v' to the value with domain index 'idx' */
+  void put(Variable v, int idx){
+    Data a = d;
+    int i = indexOf(v.varID);
+    if(i >= 0 && a.vars[i] == v && a.vals[i] == idx)
+      return;
+    int n = i >= 0 ? a.n : a.n + 1;
+    Variable[] rvars = new Variable[n];
+    int[] rids = new int[n];
+    int[] rvals = new int[n];
+    if(i >= 0){
+      System.arraycopy(a.vars, 0, rvars, 0, a.n);
+      System.arraycopy(a.ids, 0, rids, 0, a.n);
+      System.arraycopy(a.vals, 0, rvals, 0, a.n);
     }
     else{
-      vals.setElementAt(val,i);
+      i = -i - 1;
+      System.arraycopy(a.vars, 0, rvars, 0, i);
+      System.arraycopy(a.ids, 0, rids, 0, i);
+      System.arraycopy(a.vals, 0, rvals, 0, i);
+      System.arraycopy(a.vars, i, rvars, i + 1, a.n - i);
+      System.arraycopy(a.ids, i, rids, i + 1, a.n - i);
+      System.arraycopy(a.vals, i, rvals, i + 1, a.n - i);
     }
+    rvars[i] = v;
+    rids[i] = v.varID;
+    rvals[i] = idx;
+    d = new Data(rvars, rids, rvals, n);
   }
 
   public Variable getVariable(int idx){
-    if(idx > vars.size())
+    if(idx >= d.n)
       return null;
-    return (Variable) vars.elementAt(idx);
+    return d.vars[idx];
   }
 
   public Value valueOf(Variable v){
     int i;
-    i = indexOf(v);
-    if(i == -1){
+    i = indexOf(v.varID);
+    if(i < 0){
       return null;
     }
     else
-      return (Value) vals.elementAt(i);
+      return d.vars[i].domain()[d.vals[i]];
   }
 
   public String toString(){
 
     StringBuffer sb = new StringBuffer();
     sb.append("{ ");
-    for(int i=0;i<vars.size();i++){
-      Variable v = (Variable) vars.elementAt(i);
-      Value val = valueOf(v);
+    for(int i=0;i<d.n;i++){
+      Variable v = d.vars[i];
+      Value val = v.domain()[d.vals[i]];
       sb.append(v.uniqueNameOf()).append(" ").append(val.toString());
-      if( i+1 < vars.size())
+      if( i+1 < d.n)
 	sb.append(", ");
       else
 	sb.append(" ");
@@ -175,11 +397,11 @@ public class Context{
   public String toMsg(){
     StringBuffer sb = new StringBuffer();
     sb.append(" ");
-    for(int i=0;i<vars.size();i++){
-      Variable v = (Variable) vars.elementAt(i);
-      Value val = valueOf(v);
+    for(int i=0;i<d.n;i++){
+      Variable v = d.vars[i];
+      Value val = v.domain()[d.vals[i]];
       sb.append(v.uniqueNameOf()).append(" ").append(val.toString());
-      if( i+1 < vars.size())
+      if( i+1 < d.n)
 	sb.append(" ");
     }
     return sb.toString();
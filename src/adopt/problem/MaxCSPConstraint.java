@@ -5,6 +5,9 @@
  *
  * Description: the MaxCSP constraint.
  * Stores sets of nogoods for a given pair of variables.
+ * Once the problem is read, compile() stores their costs in a table
+ * indexed by the domain indices of the two values: a dense array,
+ * or for large and sparse constraints a hash map (SparseCosts).
  **********************************************************************/
 
 package adopt.problem;
@@ -18,113 +21,162 @@ import java.util.*;
  */
 public class MaxCSPConstraint {
 
+  /* constraints of at most denseCells value pairs always get a dense
+     table.  larger ones get one only when at least 1/sparseRatio of
+     the pairs are nogoods, and never past maxDenseCells pairs. */
+  public static long denseCells = 1 << 16;
+  public static long maxDenseCells = 1 << 24;
+  public static int sparseRatio = 16;
+
   /* all constraints are binary. */
   Variable var1;
   Variable var2;
   /* weight of this constraint */
   int cost;
-  /* prohibited value pairs */
-  Hashtable nogoods;
-
-  class nogood{
-    NominalValue val1;
-    NominalValue val2;
-    
-    nogood(Value v1, Value v2){
-      val1 = (NominalValue)v1;
-      val2 = (NominalValue)v2;
-    }
-    /* are two nogood equal? */
-    public boolean equals(nogood ng){
-      if (ng.val1.equal(val1) && ng.val2.equal(val2))
-	return true;
-      return false;
-    }
-
-    public int hashCode(){
-      int n1 = new Integer(val1.toString()).intValue();
-      int n2 = new Integer(val2.toString()).intValue();
-      return n1*1000 + n2;
-    }
-  }
+  /* domain size of var2 */
+  int d2;
+  /* cost of (var1 = value i, var2 = value j) is costs[cellOf(i,j)],
+     or sparse.get(cellOf(i,j)).  nogoods are collected in 'sparse'
+     until compile() picks the table. */
+  int[] costs = null;
+  SparseCosts sparse;
+  boolean compiled = false;
 
   /** Return a new MaxCSPConstraint. 
    */
   public MaxCSPConstraint(Variable v1, Variable v2, int cst){
     super();
-    nogoods = new Hashtable();
     var1 = v1;
     var2 = v2;
     cost = cst;
+    d2 = v2.domainSize();
+    sparse = new SparseCosts(16);
   }
   
   public int hashCode(){
-    int n1 = var1.varID;
-    int n2 = var2.varID;
+    long k = pairKey(var1, var2);
+    return (int) (k ^ (k >>> 32));
+  }
+
+  /* key of the constraint between 'v1' and 'v2', the same both ways
+     round */
+  public static long pairKey(Variable v1, Variable v2){
+    long n1 = v1.varID;
+    long n2 = v2.varID;
     if(n1 > n2)
-      return n1*1000 + n2;
+      return (n1 << 32) | n2;
     else
-      return n2*1000 + n1;
+      return (n2 << 32) | n1;
+  }
+
+  /* the pair (var1 = value i, var2 = value j) */
+  long cellOf(int i, int j){
+    return (long) i * d2 + j;
   }
 
   /* add a prohibited value pair to this constraint */
   public void addNoGood(Value v1, Value v2){
-    nogood ng = new nogood(v1,v2);
-    nogoods.put(new Integer(ng.hashCode()), ng);
-    /* error check */
-    nogood n = new nogood(v1,v2);
-    if(nogoods.get(new Integer(n.hashCode())) == null){
-      System.out.println("Hashtable is hosed");
-      System.out.println("Exiting.");
-      System.exit(0);
+    addNoGood(v1, v2, cost);
+  }
+
+  /* add a prohibited value pair with a weight of its own */
+  public void addNoGood(Value v1, Value v2, int weight){
+    int i = var1.indexOf(v1);
+    int j = var2.indexOf(v2);
+    /* can never be violated */
+    if(i < 0 || j < 0){
+      Utility.Dprint("MaxCSPConstraint: nogood (" + v1 + "," + v2 + ") is outside the domains of " 
+		     + var1.uniqueNameOf() + ", " + var2.uniqueNameOf(), 0);
+      return;
     }
+    if(costs != null)
+      costs[(int) cellOf(i, j)] = weight;
+    else
+      sparse.put(cellOf(i, j), weight);
+  }
+
+  /* pick the table for the nogoods read so far.  call once the
+     problem is read; nogoods added later go straight into it. */
+  public void compile(){
+    if(compiled)
+      return;
+    compiled = true;
+    long cells = (long) var1.domainSize() * d2;
+    if(cells <= denseCells ||
+       (cells <= maxDenseCells && (long) sparse.size() * sparseRatio >= cells)){
+      costs = new int[(int) cells];
+      for(int k=0;k<sparse.keys.length;k++)
+	if(sparse.keys[k] >= 0)
+	  costs[(int) sparse.keys[k]] = sparse.costs[k];
+      sparse = null;
+    }
+  }
+
+  /* is the cost table dense? */
+  public boolean isDense(){
+    return costs != null;
   }
 
   /* returns 1 if (vvar1 = v1, vvar2 = v2) is a nogood
      return 0 otherwise.
      */
   public int evaluate(Variable vvar1, Value v1, Variable vvar2, Value v2){
+    return evaluate(vvar1, vvar1.indexOf(v1), vvar2, vvar2.indexOf(v2));
+  }
+
+  /* same, with the values given by their domain indices */
+  public int evaluate(Variable vvar1, int idx1, Variable vvar2, int idx2){
     int rc = 0;
     /*** print block ****/
-    Utility.Dprint("Entering MaxCSPConstraint.evaluate", 
-		   Utility.TRACE_RIDICULOUS_LEVEL);
-    int id1 = vvar1.varID;
-    int id2 = vvar2.varID;
-    int val1 = new Integer(v1.toString()).intValue();
-    int val2 = new Integer(v2.toString()).intValue();
-    Utility.Dprint("  Comparing ("+id1+","+val1+") to ("+id2+","+val2+")", 
-		   Utility.TRACE_RIDICULOUS_LEVEL);
+    if(Utility.Dprinting(Utility.TRACE_RIDICULOUS_LEVEL)){
+      Utility.Dprint("Entering MaxCSPConstraint.evaluate", 
+		     Utility.TRACE_RIDICULOUS_LEVEL);
+      Utility.Dprint("  Comparing ("+vvar1.varID+","+idx1+") to ("+vvar2.varID+","+idx2+")", 
+		     Utility.TRACE_RIDICULOUS_LEVEL);
+    }
     /*** end print block ****/
 
-    nogood n = null;
-    if(var1.equalVar(vvar1) && var2.equalVar(vvar2))
-      n = new nogood(v1,v2);
-    else if(var1.equalVar(vvar2) && var2.equalVar(vvar1))
-      n = new nogood(v2,v1);
+    if(!compiled)
+      compile();
+    int i, j;
+    if(var1.equalVar(vvar1) && var2.equalVar(vvar2)){
+      i = idx1;
+      j = idx2;
+    }
+    else if(var1.equalVar(vvar2) && var2.equalVar(vvar1)){
+      i = idx2;
+      j = idx1;
+    }
     else{
       System.out.println("MaxCSPConstraint.evaluate(): Error!");
       System.out.println("  Unknown Variables:");
       vvar1.printVariable();
       vvar2.printVariable();
       System.exit(0);
+      return 0;
     }
-    if(nogoods.get(new Integer(n.hashCode())) != null){
-      rc = cost;
+    /* a value outside the domain is in no nogood */
+    if(i >= 0 && j >= 0){
+      if(costs != null)
+	rc = costs[i*d2 + j];
+      else
+	rc = sparse.get(cellOf(i, j));
     }
-    Utility.Dprint("  returning MaxCSPConstraint.evaluate(): " + rc,
-		   Utility.TRACE_RIDICULOUS_LEVEL);
+    if(Utility.Dprinting(Utility.TRACE_RIDICULOUS_LEVEL))
+      Utility.Dprint("  returning MaxCSPConstraint.evaluate(): " + rc,
+		     Utility.TRACE_RIDICULOUS_LEVEL);
     return rc;
   }
 
   public void printConstraint(){
-//    Enumeration enum = nogoods.keys();
-    
-    nogoods.keys();
-    while(nogoods.keys().hasMoreElements()){
-//      nogood n = (nogood) nogoods.get(enum.nextElement());
-    	nogood n = (nogood) nogoods.keys().nextElement();
-      System.out.println("     Nogood: " + n.val1.toString() +" " + n.val2.toString());
-    }
+    Value[] dom1 = var1.domain();
+    Value[] dom2 = var2.domain();
+    for(int i=0;i<dom1.length;i++)
+      for(int j=0;j<dom2.length;j++){
+	int c = costs != null ? costs[i*d2 + j] : sparse.get(cellOf(i, j));
+	if(c != 0)
+	  System.out.println("     Nogood: " + dom1[i].toString() +" " + dom2[j].toString());
+      }
   }
 
   public static void main(String[] args)
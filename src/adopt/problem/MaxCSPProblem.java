@@ -22,6 +22,12 @@ public class MaxCSPProblem extends Problem{
 
 	/* Set of Constraints */
 	Hashtable constraints;
+	/* the constraints of the variable with index i, by neighbor:
+	   nbrIndex[i] holds the indices of its constrained neighbors in
+	   increasing order, nbrConstraint[i] the constraint with each.
+	   built by compileConstraints(). */
+	int[][] nbrIndex = null;
+	MaxCSPConstraint[][] nbrConstraint = null;
 
 	public MaxCSPProblem(String fname, int _order){
 		super("MaxCSPProblem");
@@ -31,6 +37,8 @@ public class MaxCSPProblem extends Problem{
 		System.out.println("Reading input file... ");
 		/* set agents and variables */
 		readTaskFile(fname);
+		indexVariables();
+		compileConstraints();
 		System.out.println("  Forming DFS tree... ");
 		_orderSwitch = _order;
 		if(_orderSwitch == CHAIN){
@@ -147,6 +155,8 @@ public class MaxCSPProblem extends Problem{
 		StringTokenizer t;
 		Vector agnts = new Vector();
 		MaxCSPConstraint currentConstraint = null;
+		/* the variables read so far, by varID */
+		Hashtable byID = new Hashtable();
 
 		Utility.Dprint("  Reading config file " + fileName, Utility.TRACE_RIDICULOUS_LEVEL);
 
@@ -201,6 +211,7 @@ public class MaxCSPProblem extends Problem{
 					int[] agentidList;
 					Variable tv  = new Variable(aid, tid, size);
 					vars.add(tv);
+					byID.put(Integer.valueOf(tid), tv);
 				}catch(Exception e){
 					Utility.Dprint("  Error in VARIABLE line : " + e, 0);
 					Utility.Dprint("    " + line, 0);
@@ -209,9 +220,9 @@ public class MaxCSPProblem extends Problem{
 			else if(line.startsWith("CONSTRAINT")){
 				try{
 					int v1 = new Integer(t.nextToken()).intValue(); // var id
-					Variable var1 = getVariableFromID(v1);
+					Variable var1 = (Variable) byID.get(Integer.valueOf(v1));
 					int v2 = new Integer(t.nextToken()).intValue(); // var id
-					Variable var2 = getVariableFromID(v2);
+					Variable var2 = (Variable) byID.get(Integer.valueOf(v2));
 					int cost = 0;
 					try{
 						cost = new Integer(t.nextToken()).intValue(); // cost
@@ -221,15 +232,11 @@ public class MaxCSPProblem extends Problem{
 					if(var1 == null || var2 == null){
 						throw new Exception("Unknown variable");
 					}
-					for(int i=0;i<vars.size();i++){
-						Variable v =  (Variable) vars.elementAt(i);
-						if (v.varID == var1.varID)
-							var1.addNeighbor(var2);
-						else if(v.varID == var2.varID)
-							var2.addNeighbor(var1);
-					}
+					var1.addNeighbor(var2);
+					if(var2 != var1)
+						var2.addNeighbor(var1);
 					currentConstraint = new MaxCSPConstraint(var1, var2, cost);
-					constraints.put(new Integer(currentConstraint.hashCode()), currentConstraint);
+					constraints.put(Long.valueOf(MaxCSPConstraint.pairKey(var1, var2)), currentConstraint);
 				}catch(Exception e){
 					Utility.Dprint("  Error in CONSTRAINT line : " + e, 0);
 					Utility.Dprint("    " + line, 0);
@@ -240,7 +247,12 @@ public class MaxCSPProblem extends Problem{
 				Value val1 = new NominalValue(v1);
 				int v2 = new Integer(t.nextToken()).intValue(); // value
 				Value val2 = new NominalValue(v2);
-				currentConstraint.addNoGood(val1,val2);
+				if(t.hasMoreTokens()){
+					int w = new Integer(t.nextToken()).intValue(); // weight of this pair
+					currentConstraint.addNoGood(val1,val2,w);
+				}
+				else
+					currentConstraint.addNoGood(val1,val2);
 			}
 			else{
 				// we don't know this line, ignore and go back...
@@ -257,12 +269,10 @@ public class MaxCSPProblem extends Problem{
 		for(int j=0;j<vars.size();j++){
 			map2[j] = -1;
 		}
-		for(int j=0;j<vars.size();j++){
-			for(int i=0;i<vars.size();i++){
-				Variable v1 = (Variable) vars.elementAt(i);
-				if (v1.varID == j)
-					map2[j] = 1;
-			}
+		for(int i=0;i<vars.size();i++){
+			Variable v1 = (Variable) vars.elementAt(i);
+			if (v1.varID >= 0 && v1.varID < vars.size())
+				map2[v1.varID] = 1;
 		}
 		for(int j=0;j<vars.size();j++){
 			if(map2[j] < 0 ){
@@ -311,32 +321,78 @@ public class MaxCSPProblem extends Problem{
 		return 0;
 	}
 
+	/* compile the cost table of every constraint, and list the
+	   constraints of each variable by its neighbors' indices */
+	void compileConstraints(){
+		int n = vars.size();
+		MaxCSPConstraint[] all = new MaxCSPConstraint[constraints.size()];
+		int[] degree = new int[n];
+		Enumeration e = constraints.elements();
+		for(int c = 0; e.hasMoreElements(); c++){
+			MaxCSPConstraint mc = (MaxCSPConstraint) e.nextElement();
+			mc.compile();
+			all[c] = mc;
+			degree[mc.var1.index]++;
+			if(mc.var2 != mc.var1)
+				degree[mc.var2.index]++;
+		}
+		/* (neighbor index << 32 | constraint number) of each
+		   variable's constraints, sorted by neighbor index */
+		long[][] keys = new long[n][];
+		for(int i = 0; i < n; i++)
+			keys[i] = new long[degree[i]];
+		int[] fill = new int[n];
+		for(int c = 0; c < all.length; c++){
+			int i1 = all[c].var1.index;
+			int i2 = all[c].var2.index;
+			keys[i1][fill[i1]++] = ((long) i2 << 32) | c;
+			if(i2 != i1)
+				keys[i2][fill[i2]++] = ((long) i1 << 32) | c;
+		}
+		nbrIndex = new int[n][];
+		nbrConstraint = new MaxCSPConstraint[n][];
+		for(int i = 0; i < n; i++){
+			long[] k = keys[i];
+			Arrays.sort(k);
+			nbrIndex[i] = new int[k.length];
+			nbrConstraint[i] = new MaxCSPConstraint[k.length];
+			for(int j = 0; j < k.length; j++){
+				nbrIndex[i][j] = (int) (k[j] >>> 32);
+				nbrConstraint[i][j] = all[(int) k[j]];
+			}
+		}
+	}
+
 	/* look up the constraint between these two variables, 
      return null if no constraint */
 	public MaxCSPConstraint getConstraint(Variable q1, Variable q2){
-		MaxCSPConstraint mc = new MaxCSPConstraint(q1,q2, 0);
-		MaxCSPConstraint mmc = (MaxCSPConstraint) 
-				constraints.get(new Integer(mc.hashCode()));
-		return mmc;
+		if(q1.index < 0 || q2.index < 0)
+			return null;
+		int k = Arrays.binarySearch(nbrIndex[q1.index], q2.index);
+		if(k < 0)
+			return null;
+		return nbrConstraint[q1.index][k];
 	}
 
 	/* evaluate binary constraints */
 	public int evaluate(Variable q1, Value v1, Variable q2, Value v2){
-		int rc = 0;
+		return evaluate(q1, q1.indexOf(v1), q2, q2.indexOf(v2));
+	}
 
-		Utility.Dprint("Entering MaxCSPProblem.evaluate", 
-				Utility.TRACE_RIDICULOUS_LEVEL);
-		int id1 = q1.varID;
-		int id2 = q2.varID;
-		int val1 = new Integer(v1.toString()).intValue();
-		int val2 = new Integer(v2.toString()).intValue();
-		Utility.Dprint("  Comparing ("+id1+","+val1+") to ("+id2+","+val2+")", 
-				Utility.TRACE_RIDICULOUS_LEVEL);
+	/* evaluate binary constraints, on domain indices */
+	public int evaluate(Variable q1, int idx1, Variable q2, int idx2){
+		int rc = 0;
 
-		if(connected(q1, q2)){
-			MaxCSPConstraint mmc = getConstraint(q1,q2);
-			rc = mmc.evaluate(q1,v1,q2,v2);
+		if(Utility.Dprinting(Utility.TRACE_RIDICULOUS_LEVEL)){
+			Utility.Dprint("Entering MaxCSPProblem.evaluate", 
+					Utility.TRACE_RIDICULOUS_LEVEL);
+			Utility.Dprint("  Comparing ("+q1.varID+","+idx1+") to ("+q2.varID+","+idx2+")", 
+					Utility.TRACE_RIDICULOUS_LEVEL);
 		}
+
+		MaxCSPConstraint mmc = getConstraint(q1,q2);
+		if(mmc != null && connected(q1, q2))
+			rc = mmc.evaluate(q1,idx1,q2,idx2);
 		return rc;
 	}
 
@@ -20,15 +20,31 @@ public class NominalValue extends Value{
 
   /** Value is represented as a string. */
   String value;
+  /* the value as an int, for values that are one (like the values of
+     a Variable's domain, where it is the domain index); -1 otherwise */
+  int index = -1;
   
   /** Create a new NominalValue.
    */
   public NominalValue(String v ){
     value = v;
+    try{
+      int i = Integer.parseInt(v);
+      if(i >= 0 && v.equals(Integer.toString(i)))
+	index = i;
+    }catch(NumberFormatException e){
+    }
   }
 
   public NominalValue(int v ){
     value = v + "";
+    if(v >= 0)
+      index = v;
+  }
+
+  /** The value as an int, -1 if it is not a non-negative int. */
+  public int index(){
+    return index;
   }
 
 
@@ -37,7 +53,10 @@ public class NominalValue extends Value{
    * @return true if values are equal, false otherwise.
    */
   public boolean equal(Value v){
-    if(value.equals(((NominalValue)v).value))
+    NominalValue nv = (NominalValue) v;
+    if(index >= 0 || nv.index >= 0)
+      return index == nv.index;
+    if(value.equals(nv.value))
       return true;
     else
       return false;
@@ -20,110 +20,118 @@ public class PriorityTree{
   PriorityNode r;
   /* children of r */
   public Vector children;
+  /* the subtree this one is a child of, null for a whole tree */
+  PriorityTree parent = null;
+  /* every subtree of the whole tree, by the unique name of its root
+     variable.  one map is shared by all the subtrees of a tree, so
+     that finding a variable is a lookup, and the walks below need no
+     recursion: trees of tens of thousands of variables can be as deep
+     as they are big. */
+  HashMap nodes = new HashMap();
 
   /* Class constructor */
   public PriorityTree(Variable v1){
     r = new PriorityNode(v1, 0);
     children = new Vector();
+    nodes.put(v1.uniqueNameOf(), this);
   }
 
   public PriorityTree(Variable v1, int cost1){
     r = new PriorityNode(v1, cost1);
     children = new Vector();
+    nodes.put(v1.uniqueNameOf(), this);
   }
 
   public PriorityTree(PriorityNode root){
     r = root;
     children = new Vector();
+    nodes.put(root.v.uniqueNameOf(), this);
   }
 
   public Variable getRootVariable(){
     return r.v;
   }
 
+  /* the subtree of 'this' rooted at the given variable, null if the
+     variable is not in 'this' */
+  PriorityTree find(Variable v){
+    PriorityTree t = (PriorityTree) nodes.get(v.uniqueNameOf());
+    if(t == null || parent == null)
+      return t;
+    for(PriorityTree a = t; a != null; a = a.parent)
+      if(a == this)
+	return t;
+    return null;
+  }
+
+  /* all subtrees of 'this', 'this' first, in depth-first order */
+  Vector subtrees(){
+    Vector result = new Vector();
+    Stack stack = new Stack();
+    stack.push(this);
+    while(!stack.isEmpty()){
+      PriorityTree t = (PriorityTree) stack.pop();
+      result.add(t);
+      for(int i=t.children.size()-1;i>=0;i--)
+	stack.push(t.children.elementAt(i));
+    }
+    return result;
+  }
+
   /* Traverse the tree until the given variable is found.  Return a
      pointer to the subtree whose root is the parent of the given
      variable */
   public PriorityTree getParent(Variable v){
-    PriorityTree result = null;
-    
-    for(int i=0;i<children.size();i++){
-      PriorityTree st = (PriorityTree) children.elementAt(i);
-      if(st.r.v.equalVar(v)){
-	result = this;
-	break;
-      }
-      else{
-	PriorityTree sst = st.getParent(v);
-	if(sst != null){
-	  result = sst;
-	  break;
-	}
-      }
-    }
-    return result;
+    PriorityTree t = find(v);
+    if(t == null || t == this)
+      return null;
+    return t.parent;
   }
 
   /* Traverse the tree until the given variable is found, return its
      associated integer. */
   public int getCost(Variable v){
-    int result = -1;
-    if (v.equalVar(r.v))
-      result = r.num;
-    else{
-      for(int i=0;i<children.size();i++){
-	PriorityTree st = (PriorityTree) children.elementAt(i);
-	int c = st.getCost(v);
-	if(c >= 0){
-	  result = c;
-	  break;
-	}
-      }
-    }
-    return result;
+    PriorityTree t = find(v);
+    if(t == null)
+      return -1;
+    return t.r.num;
   }
 
   public int size(){
-    int result = 0;
-    /* count root */
-    result++;
-    /* count num descendents */
-    for(int i=0;i<children.size();i++){
-      PriorityTree st = (PriorityTree) children.elementAt(i);
-      result += st.size();
-    }
-    return result;
+    /* a whole tree has all of the map */
+    if(parent == null)
+      return nodes.size();
+    return subtrees().size();
   }
 
   /* what is the depth of this tree? 
    'depth' is the longest path from root to leaf */
   public int depth(){
     int maxd = 0;
-    for(int i=0;i<children.size();i++){
-      PriorityTree st = (PriorityTree) children.elementAt(i);
-      int d = st.depth();
+    /* subtrees to visit, and their depths */
+    Vector stack = new Vector();
+    int[] depths = new int[16];
+    stack.add(this);
+    depths[0] = 1;
+    while(stack.size() > 0){
+      int top = stack.size() - 1;
+      PriorityTree t = (PriorityTree) stack.remove(top);
+      int d = depths[top];
       if(d > maxd)
 	maxd = d;
+      for(int i=0;i<t.children.size();i++){
+	if(stack.size() == depths.length)
+	  depths = Arrays.copyOf(depths, 2 * depths.length);
+	depths[stack.size()] = d + 1;
+	stack.add(t.children.elementAt(i));
+      }
     }
-    return maxd+1;
+    return maxd;
   }
 
   /* return a pointer to the subtree rooted at the given variable */
   public PriorityTree getSubTree(Variable v){
-    if(v.equalVar(r.v))
-      return this;
-    for(int i=0;i<children.size();i++){
-      PriorityTree st = (PriorityTree) children.elementAt(i);
-      if(v.equalVar(st.r.v)){
-	return st;
-      }
-      else{
-	PriorityTree stt = st.getSubTree(v);
-	if(stt != null)
-	  return stt;
-      }
-    }
-    return null;
+    return find(v);
   }
   /* add a branch to 'this' node. */
   public void addSubTree(PriorityTree st){
@@ -135,6 +143,14 @@ public class PriorityTree{
 	System.exit(0);
       }
     children.add(st);
+    st.parent = this;
+    /* the branch joins the map of this tree */
+    Vector sts = st.subtrees();
+    for(int i=0;i<sts.size();i++){
+      PriorityTree t = (PriorityTree) sts.elementAt(i);
+      nodes.put(t.r.v.uniqueNameOf(), t);
+      t.nodes = nodes;
+    }
   }
   
   /* is the given tree equal to this one?
@@ -152,7 +168,7 @@ public class PriorityTree{
       PriorityTree sst = (PriorityTree) children.elementAt(i);
       int flag = 0;
       for(int j=0;j<st.children.size();j++){
-	PriorityTree sst2 = (PriorityTree) st.children.elementAt(j);	
+	PriorityTree sst2 = (PriorityTree) st.children.elementAt(j);    
 	if(sst.equal(sst2)){
 	  flag = 1;
 	  break;
@@ -166,67 +182,70 @@ public class PriorityTree{
 
   /* is v in this tree? */
   public boolean isInTree(Variable v){
-    if(v.equalVar(r.v)) return true;
-    for(int i=0;i<children.size();i++){
-      PriorityTree st = (PriorityTree) children.elementAt(i);
-      if(st.isInTree(v)) return true;
-    }
-    return false;
+    return find(v) != null;
   }
 
   /* another consistency check method */
-  /* is v1 a descendent of v2? */
+  /* is v2 in the subtree below v1, i.e. is v1 higher priority? */
   public boolean isDescendent(Variable v1, Variable v2){
-    boolean result = false;
-
-    if(r.v.equalVar(v1)){
-      for(int i=0;i<children.size();i++){
-	PriorityTree st = (PriorityTree) children.elementAt(i);
-	if(st.isInTree(v2)) result = true;
-      }
-    }
-    else{
-      for(int i=0;i<children.size();i++){
-	PriorityTree st = (PriorityTree) children.elementAt(i);
-	boolean rc = st.isDescendent(v1, v2);
-	if(rc == true){
-	  result = true;
-	  break;
-	}
-      }
-    }
-    return result;
+    PriorityTree t1 = find(v1);
+    if(t1 == null)
+      return false;
+    PriorityTree t2 = (PriorityTree) nodes.get(v2.uniqueNameOf());
+    if(t2 == null)
+      return false;
+    for(PriorityTree a = t2.parent; a != null; a = a.parent)
+      if(a == t1)
+	return true;
+    return false;
   }
 
   /* is any variable in st already in this tree? */
   public boolean consistencyCheck(PriorityTree st){
-    if(isInTree(st.r.v)) return false;
-    for(int i=0;i<st.children.size();i++){
-      PriorityTree sst = (PriorityTree) st.children.elementAt(i);
-      boolean rc = consistencyCheck(sst);
-      if(!rc) return false;
+    Vector sts = st.subtrees();
+    for(int i=0;i<sts.size();i++){
+      PriorityTree t = (PriorityTree) sts.elementAt(i);
+      if(isInTree(t.r.v))
+	return false;
     }
     return true;
   }
 
+  /* marks for the walks of toString() and toDFSString() */
+  static final Object CLOSE = new Object();
+  static final Object SEP = new Object();
+
   public String toString(){
     StringBuffer sb = new StringBuffer();    
-    sb.append("(" + r.toString());
-    for(int i=0;i<children.size();i++){
-      PriorityTree st = (PriorityTree) children.elementAt(i);
-      sb.append(", " + st.toString());
+    Stack stack = new Stack();
+    stack.push(this);
+    while(!stack.isEmpty()){
+      Object o = stack.pop();
+      if(o == CLOSE)
+	sb.append(")");
+      else if(o == SEP)
+	sb.append(", ");
+      else{
+	PriorityTree t = (PriorityTree) o;
+	sb.append("(" + t.r.toString());
+	stack.push(CLOSE);
+	for(int i=t.children.size()-1;i>=0;i--){
+	  stack.push(t.children.elementAt(i));
+	  stack.push(SEP);
+	}
+      }
     }
-    sb.append(")");
     return sb.toString();
   }
 
 
   public String toDFSString(){
     StringBuffer sb = new StringBuffer();    
-    sb.append(r.v.varID );
-    for(int i=0;i<children.size();i++){
-      PriorityTree st = (PriorityTree) children.elementAt(i);
-      sb.append(", " + st.toDFSString());
+    Vector sts = subtrees();
+    for(int i=0;i<sts.size();i++){
+      if(i > 0)
+	sb.append(", ");
+      sb.append(((PriorityTree) sts.elementAt(i)).r.v.varID);
     }
     return sb.toString();
   }
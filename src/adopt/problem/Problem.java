@@ -49,6 +49,10 @@ public abstract class Problem {
      pOrder.getCost() holds the priority of pOrder.root. 
    */
   PriorityTree pOrderTree = null;
+  /* varByID[i] is the variable with varID i (see indexVariables()) */
+  Variable[] varByID = null;
+  /* variables by uniqueNameOf() (see indexVariables()) */
+  Hashtable varByName = null;
   /*** End class variables ***/
 
   /*** Class Methods ***/
@@ -64,6 +68,12 @@ public abstract class Problem {
   public abstract int evaluate(Variable v1, Value val1);
   /* evaluate binary constraints */
   public abstract int evaluate(Variable v1, Value val1, Variable v2, Value val2);
+  /* evaluate binary constraints on the values with domain indices
+     'idx1' and 'idx2'.  problems that can, override this to check
+     without going through Value objects. */
+  public int evaluate(Variable v1, int idx1, Variable v2, int idx2){
+    return evaluate(v1, v1.domain[idx1], v2, v2.domain[idx2]);
+  }
   /* evaluate n-ary constraints */
   public abstract int evaluate(Variable v1, Value val1, Context vw);
   /* return true if priority(v1) > priority(v2), false otherwise */
@@ -121,34 +131,38 @@ public abstract class Problem {
   /* DELTA(): Computes local cost delta(v1) with respect to all
      variables in given context */
   public int delta(Variable v1, Context vw){
-    /*debug*/Utility.Dprint("Entering Problem.delta():....", Utility.TRACE_RIDICULOUS_LEVEL);      
+    boolean dbg = Utility.Dprinting(Utility.TRACE_RIDICULOUS_LEVEL);
+    if(dbg){
+      /*debug*/Utility.Dprint("Entering Problem.delta():....", Utility.TRACE_RIDICULOUS_LEVEL);      
+      /*debug*/    Utility.Dprint("    Variable: " + v1.uniqueNameOf(), Utility.TRACE_RIDICULOUS_LEVEL);
+      /*debug*/    Utility.Dprint("    Context: " + vw.toString(), Utility.TRACE_RIDICULOUS_LEVEL);      
+    }
     int delta = 0;
-    /*debug*/    Utility.Dprint("    Variable: " + v1.uniqueNameOf(), Utility.TRACE_RIDICULOUS_LEVEL);
-    /*debug*/    Utility.Dprint("    Context: " + vw.toString(), Utility.TRACE_RIDICULOUS_LEVEL);      
-    Value val1 = vw.valueOf(v1);
-    if(val1 == null){
+    Context.Data d = vw.d;
+    int k = vw.indexOf(v1.varID);
+    if(k < 0){
       Utility.Dprint("Problem.delta(): Unknown variable", Utility.DEBUG);      
       System.exit(0);
     }
+    int idx1 = d.vals[k];
+    Value val1 = v1.domain[idx1];
     /* evaluate unary constraint*/
     delta = sumDeltas(delta, evaluate(v1,val1));
     
-    /* evaluate binary constraints*/
-    Variable v2;
-    for(int i=0;i<vars.size();i++){
-      v2 = (Variable) vars.elementAt(i);
-      Value val2 = vw.valueOf(v2);
-      if(val2 != null){
-	if(connected(v1, v2)){
-	  int rc = evaluate(v1, val1, v2, val2);
-	  delta = sumDeltas(delta, rc);
-	}
+    /* evaluate binary constraints, on the domain indices held by
+       the context */
+    for(int i=0;i<d.n;i++){
+      Variable v2 = d.vars[i];
+      if(connected(v1, v2)){
+	int rc = evaluate(v1, idx1, v2, d.vals[i]);
+	delta = sumDeltas(delta, rc);
       }
     }
     /* evaluate nary constraints */
     delta = sumDeltas(delta, evaluate(v1,val1, vw));
-    /*debug*/    Utility.Dprint("...leaving Problem.delta() " + delta, 
-				Utility.TRACE_RIDICULOUS_LEVEL);      
+    if(dbg)
+      /*debug*/    Utility.Dprint("...leaving Problem.delta() " + delta, 
+				  Utility.TRACE_RIDICULOUS_LEVEL);      
     return delta;
   }
 
@@ -168,6 +182,12 @@ public abstract class Problem {
   /* return variable in this problem with given uniqueName */
   public Variable getVariableFromUniqueVarName(String uname){
 
+    Hashtable h = varByName;
+    if(h != null){
+      Variable v = (Variable) h.get(uname);
+      if(v != null)
+	return v;
+    }
     for(int i=0;i<vars.size();i++) {
       Variable v2 = (Variable) vars.elementAt(i);
       if(v2.isUniqueNameOf(uname))
@@ -202,8 +222,49 @@ public abstract class Problem {
     Utility.Dprint("...leaving getLinks()", Utility.TRACE_RIDICULOUS_LEVEL);      
     return result;
   }
+  /* number the variables densely (Variable.index, their position in
+     'vars') and build the varID and unique name indices used by
+     getVariableFromID() and getVariableFromUniqueVarName(), and the
+     neighbor sets of Variable.isNeighbor().  call once all variables
+     and constraints have been added. */
+  public void indexVariables(){
+    int max = -1;
+    Hashtable byName = new Hashtable();
+    for(int j=0;j<vars.size();j++){
+      Variable v = (Variable) vars.elementAt(j);
+      v.index = j;
+      byName.put(v.uniqueNameOf(), v);
+      if(v.varID > max)
+	max = v.varID;
+    }
+    for(int j=0;j<vars.size();j++){
+      Variable v = (Variable) vars.elementAt(j);
+      BitSet nb = new BitSet(vars.size());
+      for(int i=0;i<v.neighbors.size();i++){
+	Variable vv = (Variable) v.neighbors.elementAt(i);
+	/* a neighbor from outside 'vars' keeps the slow path */
+	if(vv.index < 0 || vv.index >= vars.size() || vars.elementAt(vv.index) != vv){
+	  nb = null;
+	  break;
+	}
+	nb.set(vv.index);
+      }
+      v.neighborSet = nb;
+    }
+    varByName = byName;
+    Variable[] idx = new Variable[max+1];
+    for(int j=0;j<vars.size();j++){
+      Variable v = (Variable) vars.elementAt(j);
+      if(v.varID >= 0)
+	idx[v.varID] = v;
+    }
+    varByID = idx;
+  }
   /* return variable in this problem with given varID */
   public Variable getVariableFromID(int v1){
+    Variable[] idx = varByID;
+    if(idx != null && v1 >= 0 && v1 < idx.length && idx[v1] != null)
+      return idx[v1];
     for(int j=0;j<vars.size();j++){
       Variable v = (Variable) vars.elementAt(j);
       if(v.varID == v1){
@@ -436,7 +497,10 @@ public abstract class Problem {
     /* error check */
     for(int i=0;i<vars.size();i++){
       Variable v1 = (Variable) vars.elementAt(i);
-      for(int j=0;j<vars.size();j++){
+      BitSet nb = v1.neighborSet;
+      for(int j = nb == null ? 0 : nb.nextSetBit(0);
+	  j >= 0 && j < vars.size();
+	  j = nb == null ? j+1 : nb.nextSetBit(j+1)){
 	Variable v2 = (Variable) vars.elementAt(j);
 	if(connected(v1, v2) &&
 	   !order.isDescendent(v1, v2) &&
@@ -557,6 +621,16 @@ public abstract class Problem {
   /* how many links does the given variable have with unchosen variables? */
   public int numLinksUnChosen(Variable v, int[] l){
     int result = 0;
+    /* only the neighbors can be connected */
+    BitSet nb = v.neighborSet;
+    if(nb != null){
+      for(int i=nb.nextSetBit(0);i>=0;i=nb.nextSetBit(i+1)){
+	Variable v1 = (Variable) vars.elementAt(i);
+	if(connected(v1, v) && l[v1.varID] == -1 )
+	  result++;
+      }
+      return result;
+    }
     for(int i=0;i<vars.size();i++){
       Variable v1 = (Variable) vars.elementAt(i);
       if(connected(v1, v) && l[v1.varID] == -1 )
@@ -567,6 +641,16 @@ public abstract class Problem {
   /* how many links does the given variable have with Chosen variables? */
   public int numLinksChosen(Variable v, int[] l){
     int result = 0;
+    /* only the neighbors can be connected */
+    BitSet nb = v.neighborSet;
+    if(nb != null){
+      for(int i=nb.nextSetBit(0);i>=0;i=nb.nextSetBit(i+1)){
+	Variable v1 = (Variable) vars.elementAt(i);
+	if(connected(v1, v) && l[v1.varID] != -1 )
+	  result++;
+      }
+      return result;
+    }
     for(int i=0;i<vars.size();i++){
       Variable v1 = (Variable) vars.elementAt(i);
       if(connected(v1, v) && l[v1.varID] != -1 )
@@ -581,7 +665,12 @@ public abstract class Problem {
      */
   public Variable findNextPriority(Variable v, int[] l){
     Variable nextVar = null;
-    for(int i=0;i<vars.size();i++){
+    /* only the neighbors of v can be connected to it */
+    BitSet nb = v == null ? null : v.neighborSet;
+    int n = nb == null ? vars.size() : nb.length();
+    for(int i = nb == null ? 0 : nb.nextSetBit(0);
+	i >= 0 && i < n;
+	i = nb == null ? i+1 : nb.nextSetBit(i+1)){
       Variable vvar = (Variable) vars.elementAt(i);
       /* is this variable currently unchosen?*/
       if(l[vvar.varID] == -1){
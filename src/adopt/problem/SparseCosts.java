@@ -0,0 +1,79 @@
+/**********************************************************************
+ * File Name: SparseCosts.java
+ * Date: Oct 18 2026
+ *
+ * Costs of the nogoods of a constraint too large for a dense table:
+ * an open-addressing hash map from a packed long key (see
+ * MaxCSPConstraint.cellOf()) to the cost.  Pairs not in the map cost 0.
+ **********************************************************************/
+
+package adopt.problem;
+
+import java.util.*;
+
+class SparseCosts {
+
+  /* keys[i] is -1 for an empty slot.  keys are never negative */
+  long[] keys;
+  int[] costs;
+  int size = 0;
+  int mask;
+
+  SparseCosts(int expected){
+    int cap = 16;
+    while(cap < 2 * expected)
+      cap <<= 1;
+    keys = new long[cap];
+    costs = new int[cap];
+    mask = cap - 1;
+    Arrays.fill(keys, -1L);
+  }
+
+  static int slot(long key, int mask){
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 32) & mask;
+  }
+
+  /* cost of the pair 'key', 0 if it is not a nogood */
+  int get(long key){
+    long[] k = keys;
+    int i = slot(key, mask);
+    while(true){
+      long kk = k[i];
+      if(kk == key)
+	return costs[i];
+      if(kk < 0)
+	return 0;
+      i = (i + 1) & mask;
+    }
+  }
+
+  void put(long key, int cost){
+    if(2 * (size + 1) > keys.length)
+      grow();
+    int i = slot(key, mask);
+    while(keys[i] >= 0 && keys[i] != key)
+      i = (i + 1) & mask;
+    if(keys[i] < 0)
+      size++;
+    keys[i] = key;
+    costs[i] = cost;
+  }
+
+  void grow(){
+    long[] ok = keys;
+    int[] oc = costs;
+    keys = new long[ok.length * 2];
+    costs = new int[ok.length * 2];
+    mask = keys.length - 1;
+    Arrays.fill(keys, -1L);
+    size = 0;
+    for(int i=0;i<ok.length;i++)
+      if(ok[i] >= 0)
+	put(ok[i], oc[i]);
+  }
+
+  int size(){
+    return size;
+  }
+}
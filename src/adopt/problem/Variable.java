@@ -29,11 +29,19 @@ public class Variable {
   Value[] domain;
   /** Size of the domain */
   int domainSize;
+  /* position of this variable in Problem.vars, given by
+     Problem.indexVariables(); -1 until then */
+  public int index = -1;
+  /* the neighbors, by index.  null until the Problem is indexed */
+  BitSet neighborSet = null;
+  /* uniqueNameOf(), built once */
+  String uName;
 
   /* Class Constructor */
   public Variable(int agentID, int varID, int domain_s) {
     this.agentID = agentID;
     this.varID = varID;
+    uName = "agent"+agentID+"-var"+varID;
     domainSize = domain_s;
     /* set the domain of the variable to be int values between [0,<domain_size>]. */
     domain = new NominalValue[domainSize];
@@ -62,21 +70,20 @@ public class Variable {
   /* return string representing agentname/varname
      this is called a 'uName'*/
   public String uniqueNameOf(){
-    return "agent"+agentID+"-var"+varID;
+    return uName;
   }
   
   /* return true if the given uname is 'this' variable */
   public boolean isUniqueNameOf(String uname){
-    if(uname.equals(uniqueNameOf()))
+    if(uname.equals(uName))
        return true;
     return false;
   }
 
   /* is the given variable equal to 'this'?*/
   public boolean equalVar(Variable v){
-    if(v.uniqueNameOf().equals(uniqueNameOf()))
-      return true;
-    return false;
+    /* same uniqueNameOf() */
+    return v == this || (v.varID == varID && v.agentID == agentID);
   }
 
   /** Get the domain index of the given value. 
@@ -84,6 +91,12 @@ public class Variable {
    * @return domain index corresponding to the given value or -1 if
    * the value is not within the domain. */
   public int indexOf(Value v){
+    /* domains are made of NominalValue(i) at index i */
+    if(v instanceof NominalValue){
+      int i = ((NominalValue) v).index;
+      if(i >= 0 && i < domain.length && domain[i].equal(v))
+	return i;
+    }
     for(int i=0;i<domain.length;i++)
       if(v.equal(domain[i]))
 	return i;
@@ -130,6 +143,12 @@ public class Variable {
      NOTE: assume values are ints.
      */
   public static int compareIntValues(Value val1, Value val2){
+    if(val1 instanceof NominalValue && val2 instanceof NominalValue){
+      int i1 = ((NominalValue) val1).index;
+      int i2 = ((NominalValue) val2).index;
+      if(i1 >= 0 && i2 >= 0)
+	return i1 > i2 ? 1 : (i1 < i2 ? -1 : 0);
+    }
     try{
       int vval1 = new Integer(val1.toString()).intValue();
       int vval2 = new Integer(val2.toString()).intValue();
@@ -161,6 +180,8 @@ public class Variable {
   /* is the given variable a neighbor of this variable?*/
   public boolean isNeighbor(Variable v){
 
+    if(neighborSet != null && v.index >= 0)
+      return neighborSet.get(v.index);
     for(int i=0;i<neighbors.size();i++){
       Variable vv = (Variable) neighbors.elementAt(i);
       if(v.equalVar(vv))
@@ -171,6 +192,8 @@ public class Variable {
 
   public void addNeighbor(Variable v){
     neighbors.addElement(v);
+    if(neighborSet != null && v.index >= 0)
+      neighborSet.set(v.index);
   }
 
 //   public static void main(String args[])
@@ -42,6 +42,8 @@ public class Adopt{
   boolean valueChanged = false;
   /* used for communication */
   MessageSender mSender;
+  /* the agent running me, if it is an Intradopt */
+  Intradopt intra = null;
 
   /*Instrumentation Variables*/
   /* Log messages sent */
@@ -96,7 +98,9 @@ public class Adopt{
     /* log msgs cnts */    
     PrintWriter pwtr = null;
     String fname = "Logs/"+vvar.uniqueNameOf()+".log";
-    try{
+    if(!Logger.agentLogs)
+      pwtr = Logger.nullWriter();
+    else try{
       FileWriter ffile = new FileWriter(fname); 
       pwtr = new PrintWriter(ffile);   
     }catch(IOException e){
@@ -110,6 +114,8 @@ public class Adopt{
 
     /* initialize variables */
     mSender = mSndr;
+    if(mSndr instanceof Intradopt)
+      intra = (Intradopt) mSndr;
     pbm = p;
     CurrentContext = new Context();
     x_i = vvar;
@@ -178,6 +184,13 @@ public class Adopt{
 
   /**************Message Sending**************************/
 
+  /* the pseudoagent of 'x_l' if my agent runs it too and lets us call
+     it directly, else null */
+  Adopt localPeer(Variable x_l){
+    if(intra == null || x_l.agentID != x_i.agentID)
+      return null;
+    return intra.localPeer(x_l.varID);
+  }
   
   /* send value to each lower priority variable in 'links' */
   public void SEND_VALUE(){
@@ -193,9 +206,6 @@ public class Adopt{
   }
 
   public void sendOneValue(Variable x_l){
-    String aname = "agent" + x_l.agentIDof();
-    String header;
-    header = this.VALUE;
     int t = 0;
 
     /* If I'm sending to my child x_l, get t(d,x_l) */
@@ -203,11 +213,14 @@ public class Adopt{
     if(c != null)
       t = c.t;
     
-    /* Msg format: "VALUE  <destvariable> <THRESHOLD> <variable> <value> " */
-    String msg = header + " " + x_l.uniqueNameOf() + " " + t + 
-      " " + x_i.uniqueNameOf() + " " + d_i.toString();
-
-    mSender.sendMessage(new Message(x_l.agentID, x_i.agentID, msg), aname, true);    
+    Adopt peer = localPeer(x_l);
+    if(peer != null)
+      intra.dispatchVALUE(peer, x_i, d_i, t);
+    else{
+      Message msg = new ValueMessage(x_l.agentID, x_i.agentID, x_l.varID, t, 
+				     x_i.varID, x_i.indexOf(d_i));
+      mSender.sendMessage(msg, x_l.agentIDof(), true);    
+    }
     
     /*Instrumentation Code*/
     okmsgcnt++;
@@ -217,29 +230,32 @@ public class Adopt{
   public void SEND_TERMINATE(){
     for(int i=0;i<childrenVar.size();i++){
       Variable x_l = (Variable) childrenVar.elementAt(i);
-      String aname = "agent" + x_l.agentIDof();
-      String header = this.TERM;
-      
-      /* Msg format: "TERMINATE  <destvar> <sourcevariable> " */
-      String msg = header + " " + x_l.uniqueNameOf() + " " + x_i.uniqueNameOf();
-      mSender.sendMessage(new Message(x_l.agentID, x_i.agentID, msg), aname, true);    
+      Adopt peer = localPeer(x_l);
+      if(peer != null){
+	intra.dispatchTERMINATE(peer);
+	continue;
+      }
+      Message msg = new TerminateMessage(x_l.agentID, x_i.agentID, x_l.varID, x_i.varID);
+      mSender.sendMessage(msg, x_l.agentIDof(), true);    
     }
   }
 
   public void SEND_COST(Context vw, int lb, int ub){
 
     if(parentVar != null){
-      String header = this.COST;
 
-      /*debug*/ Utility.Dprint(x_i.uniqueNameOf() + " to " + parentVar.uniqueNameOf() + 
-		     " " + vw.toString(),     Utility.MSG_LEVEL2);
+      /*debug*/ if(Utility.Dprinting(Utility.MSG_LEVEL2))
+      /*debug*/   Utility.Dprint(x_i.uniqueNameOf() + " to " + parentVar.uniqueNameOf() + 
+			       " " + vw.toString(),     Utility.MSG_LEVEL2);
 
-      /* Msg format: "COST <destvariable> <sourcevariable> <lowerbound> <upperbound> <Context>" */
-      String msg = header + " " + parentVar.uniqueNameOf() + " " + 
-	x_i.uniqueNameOf() + " " + lb + " " + ub + " " + vw.toMsg();
-      
-      mSender.sendMessage(new Message(parentVar.agentID, x_i.agentID, msg), 
-			  "agent"+parentVar.agentIDof(), true);    
+      Adopt peer = localPeer(parentVar);
+      if(peer != null)
+	intra.dispatchCOST(peer, x_i, vw, lb, ub);
+      else{
+	Message msg = new CostMessage(parentVar.agentID, x_i.agentID, parentVar.varID, 
+				      x_i.varID, lb, ub, vw);
+	mSender.sendMessage(msg, parentVar.agentIDof(), true);    
+      }
       
       /*Instrumentation Code*/
       costmsgcnt++;
@@ -279,13 +295,13 @@ public class Adopt{
     /*debug*/     Itn2.timeElapsed("           time elapsed");
   }
 
-  public void whenReceivedCOST(Context vw, int lb, int ub, String childName){
+  public void whenReceivedCOST(Context vw, int lb, int ub, Variable childVar){
 
     /*debug*/    Utility.Dprint(" whenReceivedCOST(): ", Utility.MSG_LEVEL2);
     
     /* add to CurrentContext if necessary */
-    for(int i=0;i<vw.vars.size();i++){
-      Variable v = (Variable) vw.vars.elementAt(i);
+    for(int i=0;i<vw.size();i++){
+      Variable v = vw.getVariable(i);
       /* if not my neighbor, update CurrentContext */
       if(!pbm.connected(v, x_i) &&
 	 !x_i.equalVar(v))
@@ -295,11 +311,10 @@ public class Adopt{
     /* print debug info */
     //    printCosts(Utility.MSG_LEVEL2);
     /*debug*/    Utility.Dprint("  Context  = " + vw.toString(), Utility.MSG_LEVEL2);
-    /*debug*/    Utility.Dprint("  sender  = " + childName, Utility.MSG_LEVEL2);
+    /*debug*/    Utility.Dprint("  sender  = " + childVar.uniqueNameOf(), Utility.MSG_LEVEL2);
     /* end print debug info */
 
     Value val = vw.valueOf(x_i);
-    Variable childVar = pbm.getVariableFromUniqueVarName(childName);
 
     if(val != null){
       Context cvw = new Context();
@@ -312,17 +327,7 @@ public class Adopt{
 	  System.exit(0);
 	}
 	else{
-	  if(pbm.compareDeltas(lb, c.lb) > 0 ||
-	     pbm.compareDeltas(c.ub, ub) > 0 ){
-	    /* is d_i changing? */
-	    if(c.d.equal(d_i)){
-	      iWantToBacktrack = true;
-	    }
-	    c.lb = lb;
-	    c.ub = ub;
-	    if(contextFlag)
-	      c.context = vw;
-	  }
+	  storeCOST(c, vw, lb, ub);
 	  if (pbm.compareDeltas(c.lb, c.t) > 0 ||
 	      pbm.compareDeltas(c.t, c.ub) > 0)
 	    maintainChildThresholdInvariant(c);
@@ -335,18 +340,8 @@ public class Adopt{
       if(vw.compatible(CurrentContext)){ 
 	for(int i=0;i<costs.size();i++){
 	  Cost c = (Cost) costs.elementAt(i);
-	  if(c.x_l.isUniqueNameOf(childName)){
-	    if(pbm.compareDeltas(lb, c.lb) > 0 ||
-	       pbm.compareDeltas(c.ub, ub) > 0 ){
-	      /* is d_i changing? */
-	      if(c.d.equal(d_i)){
-		iWantToBacktrack = true;
-	      }
-	      c.lb = lb;
-	      c.ub = ub;
-	      if(contextFlag)
-		c.context = vw;
-	    }
+	  if(c.x_l.equalVar(childVar)){
+	    storeCOST(c, vw, lb, ub);
 	    if (pbm.compareDeltas(c.lb, c.t) > 0 ||
 		pbm.compareDeltas(c.t, c.ub) > 0)
 	      maintainChildThresholdInvariant(c);
@@ -372,6 +367,35 @@ public class Adopt{
     /* end DEBUG */
   }
 
+  /* a COST with bounds lb, ub under context 'vw' (compatible with
+     CurrentContext) arrived for 'c'.  tighter bounds replace c's,
+     together with their context.  otherwise c keeps its bounds: they
+     hold under the union of both contexts, which is kept so that a
+     change to a variable of either resets them, and so that vw's
+     variables are passed on up.  if the two contexts disagree, c's
+     are out of date and vw replaces them. */
+  void storeCOST(Cost c, Context vw, int lb, int ub){
+    if(pbm.compareDeltas(lb, c.lb) > 0 ||
+       pbm.compareDeltas(c.ub, ub) > 0){
+      /* is d_i changing? */
+      if(c.d.equal(d_i))
+	iWantToBacktrack = true;
+      c.lb = lb;
+      c.ub = ub;
+      if(contextFlag)
+	c.context = vw.intern();
+    }
+    else if(contextFlag){
+      if(c.context.compatible(vw))
+	c.context = c.context.union(vw).intern();
+      else{
+	c.lb = lb;
+	c.ub = ub;
+	c.context = vw.intern();
+      }
+    }
+  }
+
   public void whenReceivedTERMINATE(){
     /*debug*/ Utility.Dprint("  " + x_i.uniqueNameOf() + " parent has TERMINATED", 
 		   Utility.MSG_LEVEL3);
@@ -506,8 +530,8 @@ public class Adopt{
 	  Cost c = (Cost) costs.elementAt(i);
 	  unionContext = unionContext.union(c.context);
 	}
-	for(int i =0; i< CurrentContext.vars.size(); i++){
-	  Variable v = (Variable) CurrentContext.vars.elementAt(i);
+	for(int i =0; i< CurrentContext.size(); i++){
+	  Variable v = CurrentContext.getVariable(i);
 	  if(pbm.connected(x_i, v))
 	    CostContext.addVarToContext(v, CurrentContext.valueOf(v));
 	}
@@ -857,9 +881,7 @@ public class Adopt{
   }
 
   public int computeDelta(Value val){
-    Context vw = new Context(CurrentContext);
-    vw.addVarToContext(x_i, val);
-    int delta =  pbm.delta(x_i,vw);
+    int delta =  pbm.delta(x_i,CurrentContext.with(x_i, val));
 
     return delta;
   }
@@ -0,0 +1,129 @@
+/**********************************************************************
+ * File Name: AgentScheduler.java
+ * Date: Oct 18 2026
+ *
+ * Runs agents as actors on a shared work-stealing ForkJoinPool
+ * (-DAdoptThreads=pool) instead of giving each one its own thread.
+ * An agent is submitted to the pool only when its mailbox receives
+ * a message (or it still has work queued internally), runs a few
+ * execution cycles and gives the worker thread back.  A timer also
+ * schedules every agent once per report interval, so that idle agents
+ * still report their values to the Master.
+ *
+ * -DAdoptPoolSize sets the parallelism (default: number of cores).
+ **********************************************************************/
+
+package adopt.solver;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class AgentScheduler {
+
+  public static int poolSize =
+    Integer.getInteger("AdoptPoolSize", Runtime.getRuntime().availableProcessors()).intValue();
+  /* most execution cycles an agent runs before giving up its worker */
+  public static int maxCycles = 16;
+
+  static Pool pool = null;
+  static Timer ticker = null;
+
+  /* asyncMode gives FIFO order for actors a worker schedules itself.
+     but a worker always prefers its own queue to submissions from
+     outside the pool (the main thread, the timer, network readers),
+     so two agents that keep waking each other up would starve them.
+     each actor run therefore first moves those submissions to the
+     back of the worker's own queue. */
+  static class Pool extends ForkJoinPool {
+    Pool(int parallelism){
+      super(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    /* only call from a worker of this pool */
+    void takeSubmissions(){
+      ForkJoinTask t;
+      while((t = pollSubmission()) != null)
+	t.fork();
+    }
+  }
+
+  /* the shared pool, created on first use */
+  static synchronized ForkJoinPool pool(){
+    if(pool == null){
+      pool = new Pool(poolSize);
+      ticker = new Timer("AgentScheduler", true);
+    }
+    return pool;
+  }
+
+  /* start running 'alg', whose input mailbox is 'mb' */
+  public static Actor submit(Algorithm alg, Mailbox mb){
+    final Actor a = new Actor(alg, mb);
+    mb.listener = a;
+    pool();
+    ticker.schedule(new TimerTask(){
+	public void run(){
+	  if(a.alg.iWantToTerminate)
+	    cancel();
+	  else
+	    a.schedule();
+	}
+      }, Algorithm.reportInterval, Algorithm.reportInterval);
+    a.schedule();
+    return a;
+  }
+
+  /* one agent.  'scheduled' is true from the time it is submitted to
+     the pool until it has finished running, so at most one worker
+     runs it at a time. */
+  public static class Actor implements Runnable, Mailbox.Listener {
+    Algorithm alg;
+    Mailbox mb;
+    AtomicBoolean scheduled = new AtomicBoolean(false);
+    boolean setupDone = false;
+    /* number of times the actor ran */
+    public long numRuns = 0;
+
+    Actor(Algorithm a, Mailbox m){
+      alg = a;
+      mb = m;
+    }
+
+    /* make sure the actor runs (again) soon */
+    public void schedule(){
+      if(scheduled.compareAndSet(false, true))
+	pool.execute(this);
+    }
+
+    public void messageArrived(Mailbox mb){
+      schedule();
+    }
+
+    boolean ready(){
+      return !alg.iWantToTerminate && (alg.hasWork() || !mb.isEmpty());
+    }
+
+    public void run(){
+      numRuns++;
+      pool.takeSubmissions();
+      try{
+	if(!setupDone){
+	  setupDone = true;
+	  if(!alg.setup())
+	    return;
+	}
+	int n = 0;
+	do{
+	  alg.step();
+	}while(ready() && ++n < maxCycles);
+      }finally{
+	scheduled.set(false);
+      }
+      /* a message may have arrived after the last step(), while
+	 'scheduled' was still set */
+      if(ready())
+	schedule();
+    }
+  }
+}
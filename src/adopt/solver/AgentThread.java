@@ -14,9 +14,19 @@ import adopt.problem.*;
 import javax.swing.event.EventListenerList;
 import java.util.*;
 import java.io.*;
+import java.lang.reflect.*;
 
 public class AgentThread extends Thread {
 
+  /* -DAdoptThreads=virtual runs each algorithm on a virtual thread
+     instead of on this (platform) thread; -DAdoptThreads=pool runs
+     agents as actors on a shared pool (see AgentScheduler).  The
+     Master always gets a thread of its own. */
+  public static String PLATFORM = "platform";
+  public static String VIRTUAL = "virtual";
+  public static String POOL = "pool";
+  public static String threadMode = System.getProperty("AdoptThreads", PLATFORM);
+
   /* DCOP Problem Name */
   Problem pbm;
   /* Algorithm Name */
@@ -25,6 +35,10 @@ public class AgentThread extends Thread {
   MessageSender mSender;
   /* for logging output */
   Logger nLog = null;
+  /* the thread actually running 'algorithm' */
+  Thread runner = null;
+  /* in pool mode, the actor running 'algorithm' */
+  AgentScheduler.Actor actor = null;
 
   /* Create agent thread with name 'agentName'. */
   public AgentThread (int agentID, Problem p, String algorithmName, 
@@ -68,7 +82,9 @@ public class AgentThread extends Thread {
     /*Start Logging Setup*/
     PrintWriter pwtr = null;
     String fname = "Logs/agent"+agentID+".log";
-    try{
+    if(!Logger.agentLogs)
+      pwtr = Logger.nullWriter();
+    else try{
       FileWriter ffile = new FileWriter(fname); 
       pwtr = new PrintWriter(ffile);   
     }catch(IOException e){
@@ -83,13 +99,50 @@ public class AgentThread extends Thread {
   }
 
   public void start () {
+    if(threadMode.equals(POOL) && !(algorithm instanceof Master)
+       && mSender instanceof Simulator){
+      Mailbox mb = ((Simulator) mSender).bus.mailboxOf(algorithm.localAgentID);
+      if(mb != null){
+	actor = AgentScheduler.submit(algorithm, mb);
+	return;
+      }
+    }
+    if(threadMode.equals(VIRTUAL)){
+      runner = startVirtualThread(this);
+      if(runner != null)
+	return;
+      System.out.println("AgentThread: virtual threads not supported by this JVM," 
+			 + " using platform threads.");
+      threadMode = PLATFORM;
+    }
+    runner = this;
     super.start();
   }
+
+  /* Thread.startVirtualThread(r), looked up reflectively so that we
+     still compile and run on JVMs without virtual threads.  Returns
+     null if they are not available. */
+  static Thread startVirtualThread(Runnable r){
+    try{
+      Method m = Thread.class.getMethod("startVirtualThread", 
+					new Class[]{Runnable.class});
+      return (Thread) m.invoke(null, new Object[]{r});
+    }catch(Exception e){
+      return null;
+    }
+  }
   
   /** 
       Main loop
   **/
   public void run () { 
+    /* -DAdoptIdle, or by default: agents spin, but a virtual thread
+       has nothing to do while the agent waits for messages, so it
+       parks; the Master parks too. */
+    String dflt = "spin";
+    if(threadMode.equals(VIRTUAL) || algorithm instanceof Master)
+      dflt = "park";
+    algorithm.idle = IdleStrategy.configured(dflt);
     algorithm.run(); 
   }
 }
@@ -37,11 +37,28 @@ public abstract class Algorithm implements MessageSender {
   public int lossRate2 = 0;
   int lossCounter = 0;
 
+  /* what the agent's own message loop (run()) does when a cycle had
+     nothing to do.  null while someone else steps the agent. */
+  public IdleStrategy idle = null;
+
+  /* in-process runs: where variable values are published for the
+     Master, instead of sending STATUS messages.  null otherwise. */
+  public AssignmentBoard board = null;
+
+  /* if true, step() collects its messages before it runs rather than
+     after (see CycleSimulator) */
+  public boolean synchronous = false;
+
+  /* random numbers (message loss). EventSimulator seeds it. */
+  public Random rng = new Random();
+
   /* approximation bound */
   public static int BOUND = 0;
 
   int MAXCYC = 100000;
-  boolean iWantToTerminate = false;
+  volatile boolean iWantToTerminate = false;
+  /* told when this agent terminates, if not null */
+  TerminationDetector detector = null;
   /* time of termination for this thread */
   long timeEnd=0;
   /* number of internal execution cycles */
@@ -56,6 +73,34 @@ public abstract class Algorithm implements MessageSender {
   public abstract void run();
   public abstract void handleOneMsg(Message m);
 
+  /* run() is setup() followed by step() until termination.  Engines
+     that drive agents themselves (e.g. EventSimulator) call these
+     directly instead of run(). */
+  public boolean setup(){ return true; }
+  /* this agent is done.  call once its final reports are sent: the
+     simulator may shut down as soon as the detector hears of it. */
+  public void terminate(){
+    if(iWantToTerminate)
+      return;
+    iWantToTerminate = true;
+    if(detector != null)
+      detector.terminated();
+  }
+  public void step(){ }
+  /* has this agent got work queued internally? (its own mailbox is
+     checked by the engine) */
+  public boolean hasWork(){ return false; }
+  /* number of queued messages this agent dropped as superseded */
+  public long numSuperseded(){ return 0; }
+  /* number of messages between its own pseudoagents this agent
+     delivered without queueing them */
+  public long numLocalMsgs(){ return 0; }
+  /* number of queued COSTs this agent dropped as stale, see
+     MessageScheduler */
+  public long numStaleCosts(){ return 0; }
+  /* number of execution cycles this agent has run */
+  public int numCycles(){ return cycleCnt; }
+
   public Algorithm(int agentID, Problem p, MessageSender mSndr){
 
     /* communication set up */
@@ -82,24 +127,41 @@ public abstract class Algorithm implements MessageSender {
   }
 
 
-  /* Send message 'msg' to 'aname'
+  /* Send message 'msg' to agent 'destAgent'
      'cntFlag': count this message in the final stats? */
-  public void sendMessage(Message m, String aname, boolean cntFlag){
-    mSender.sendMessage(m, aname, cntFlag);
+  public void sendMessage(Message m, int destAgent, boolean cntFlag){
+    mSender.sendMessage(m, destAgent, cntFlag);
     LogMsg_SEND(m, localAgentID);
   }
 
-  public Message getMessage(String aname){
-    Message result =  mSender.getMessage(aname);
+  public Message getMessage(int agentID){
+    Message result =  mSender.getMessage(agentID);
     LogMsg_RCVD(result, localAgentID);
     return result;
   }
 
+  public Message waitMessage(int agentID, long timeout){
+    Message result =  mSender.waitMessage(agentID, timeout);
+    if(result != null)
+      LogMsg_RCVD(result, localAgentID);
+    return result;
+  }
+
+  /* ms left until the next report to the Master Thread is due */
+  public long timeToNextReport(){
+    long t = reportInterval - (Utility.TimeMS() - lastReportTime);
+    if(t < 1)
+      return 1;
+    return t;
+  }
+
   /**
    * Method to log all messages sent.
    */
   public static void LogMsg_SEND(Message msg, int myid)
   {
+    if(!Utility.Dprinting(Utility.MSG_LEVEL3))
+      return;
     String msgstring =  msg.rawMessage();
     
     Utility.Dprint("", Utility.MSG_LEVEL3);
@@ -114,6 +176,8 @@ public abstract class Algorithm implements MessageSender {
    */
   public static void LogMsg_RCVD(Message msg, int myid)
   {
+    if(!Utility.Dprinting(Utility.MSG_LEVEL3))
+      return;
     String msgstring =  msg.rawMessage();
     Utility.Dprint("", Utility.MSG_LEVEL3);
     Utility.Dprint(Utility.TimeStringMS() +" AGENT " + myid + "-> RCVD from AGENT " + msg.sourceAgent,
@@ -125,7 +189,7 @@ public abstract class Algorithm implements MessageSender {
 
   /* lose message with a given probablity */
   public boolean timeToLoseMsg2(){
-    double d = Math.random();
+    double d = rng.nextDouble();
     if ( 100*d < lossRate2)
       return true;
     else
@@ -147,32 +211,6 @@ public abstract class Algorithm implements MessageSender {
   }
 
 
-  /* parse msg and return new Context */
-  public Context parseContext(String msg){
-
-    Utility.Dprint("Entering parseContext()", Utility.TRACE_RIDICULOUS_LEVEL);    
-    Utility.Dprint("  msg: " + msg, Utility.TRACE_RIDICULOUS_LEVEL);          
-
-    StringTokenizer stok = new StringTokenizer(msg);
-    Context vw = new Context();
-
-    while(stok.hasMoreTokens()){
-      String token = stok.nextToken();
-      Variable v = (Variable) pbm.getVariableFromUniqueVarName(token);
-      token = stok.nextToken();
-      Value val = v.getValue(token);
-      vw.addVarToContext(v, val);
-    }
-
-    Utility.Dprint("  returning Context: " + vw.toString(), 
-		   Utility.TRACE_RIDICULOUS_LEVEL);          
-
-    Utility.Dprint("...return from parseContext()", Utility.TRACE_RIDICULOUS_LEVEL);
-    return vw;
-  }
-
-
-  
   public static void waitForKey(boolean flag){
     if(!flag)
       return;
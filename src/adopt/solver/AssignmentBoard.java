@@ -0,0 +1,61 @@
+/**********************************************************************
+ * File Name: AssignmentBoard.java
+ * Date: Oct 18 2026
+ *
+ * Current value of every variable, shared between the agents and the
+ * Master of an in-process run.  An agent publishes a variable's value
+ * (its index in the domain) whenever the variable has run, and the
+ * Master samples the board instead of waiting for STATUS messages.
+ *
+ * On by default in the in-process simulators; -DAdoptBoard=false
+ * goes back to STATUS messages.  Socket runs always use messages.
+ **********************************************************************/
+
+package adopt.solver;
+
+import adopt.problem.*;
+
+import java.util.concurrent.atomic.*;
+
+public class AssignmentBoard {
+
+  public static boolean enabled = !"false".equals(System.getProperty("AdoptBoard"));
+
+  /* domain index of the value of each variable, indexed by varID.
+     -1: no value yet.  each entry has a single writer, the owner of
+     the variable. */
+  AtomicIntegerArray values;
+  /* number of changes published so far */
+  AtomicLong version = new AtomicLong();
+
+  public AssignmentBoard(Problem p){
+    int maxID = -1;
+    for(int i=0;i<p.vars.size();i++){
+      Variable v = (Variable) p.vars.elementAt(i);
+      if(v.varID > maxID)
+	maxID = v.varID;
+    }
+    values = new AtomicIntegerArray(maxID+1);
+    for(int i=0;i<values.length();i++)
+      values.set(i, -1);
+  }
+
+  /* variable 'varID' now has the value with domain index 'value' */
+  public void publish(int varID, int value){
+    if(values.get(varID) == value)
+      return;
+    values.set(varID, value);
+    version.incrementAndGet();
+  }
+
+  /* domain index of the value of 'varID', -1 if it has none yet */
+  public int valueOf(int varID){
+    return values.get(varID);
+  }
+
+  /* changes so far; a sample taken at an unchanged version is the
+     same as the last one */
+  public long version(){
+    return version.get();
+  }
+}
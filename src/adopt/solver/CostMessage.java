@@ -0,0 +1,41 @@
+/**
+  * Adopt COST message: lower and upper bound reported by a child,
+  * with the context they hold in.
+  */
+
+package adopt.solver;
+
+import adopt.problem.*;
+
+public class CostMessage extends Message {
+
+  public int lb;
+  public int ub;
+  /* context: varIDs and domain indices of their values */
+  public int[] ctxVars;
+  public int[] ctxVals;
+
+  public CostMessage (int destAgent, int sourceAgent, int destVar, 
+		      int sourceVar, int lb, int ub, Context vw) {
+    super(COST, destAgent, sourceAgent, destVar, sourceVar);
+    this.lb = lb;
+    this.ub = ub;
+    ctxVars = vw.varIDs();
+    ctxVals = vw.valueIndices();
+  }
+
+  public CostMessage (int destAgent, int sourceAgent, int destVar, 
+		      int sourceVar, int lb, int ub, int[] ctxVars, int[] ctxVals) {
+    super(COST, destAgent, sourceAgent, destVar, sourceVar);
+    this.lb = lb;
+    this.ub = ub;
+    this.ctxVars = ctxVars;
+    this.ctxVals = ctxVals;
+  }
+
+  /* Msg format: "COST <destvariable> <sourcevariable> <lowerbound> <upperbound> <Context>" */
+  public String rawMessage() { 
+    return Adopt.COST + " var" + destVar + " var" + sourceVar + " " + lb 
+      + " " + ub + contextString(ctxVars, ctxVals);
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ *    CycleSimulator.java
+ *    Date: Oct 18 2026
+ *
+ *    Runs a DCOP algorithm in bulk-synchronous cycles on a pool of
+ *    threads.  In each cycle every agent with something to do takes
+ *    the messages sent to it in the previous cycle, computes and sends.
+ *    A Phaser barrier then closes the cycle, and the messages sent in
+ *    it are delivered in the order of their senders.  No message is
+ *    seen before the barrier, so a run does not depend on how the
+ *    threads interleave; the agents are dealt round-robin to the
+ *    threads.
+ *
+ *      java adopt.solver.CycleSimulator <algorithm> <problem-type> <file> [threads]
+ *
+ *    'threads' defaults to the number of cores.  The cycle count is the
+ *    number of synchronous cycles to termination, the measure used in
+ *    the DCOP literature.  -DAdoptNetwork does not apply: every message
+ *    takes one cycle.
+ */
+
+package adopt.solver;
+
+import adopt.common.*;
+import adopt.problem.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class CycleSimulator extends Simulator {
+
+	/* a message sent in the current cycle */
+	static class Pending {
+		Message msg;
+		int dest;
+		boolean cntFlag;
+
+		Pending(Message msg, int dest, boolean cntFlag) {
+			this.msg = msg;
+			this.dest = dest;
+			this.cntFlag = cntFlag;
+		}
+	}
+
+	int numThreads;
+	/* the (non-master) agents, and their position in agents[] by agent ID */
+	Algorithm agents[];
+	int posOf[];
+	/* messages sent in the current cycle, per sending agent.  only the
+	 * sender's thread touches its list during a cycle. */
+	LinkedList outbox[];
+	Phaser phaser;
+	Master master;
+
+	long numCycles = 0;
+	long cycleStart;
+	long totalCycleNs = 0;
+	long maxCycleNs = 0;
+	volatile boolean errorCondition = false;
+
+	public CycleSimulator(String args[], int threads) {
+		super(args);
+		numThreads = threads;
+		if (bus instanceof NetworkBus) {
+			System.out.println("CycleSimulator: every message takes one cycle, ignoring -DAdoptNetwork");
+			bus = new MailboxBus();
+		}
+	}
+
+	public boolean synchronous() {
+		return true;
+	}
+
+	public void createAgents() {
+		super.createAgents();
+		int n = 0;
+		int maxID = 0;
+		for (int i = 0; i < Agents.size(); i++) {
+			Algorithm alg = ((AgentThread) Agents.elementAt(i)).algorithm;
+			if (alg.localAgentID != Master.masterID)
+				n++;
+			if (alg.localAgentID > maxID)
+				maxID = alg.localAgentID;
+		}
+		agents = new Algorithm[n];
+		outbox = new LinkedList[n];
+		posOf = new int[maxID + 1];
+		n = 0;
+		for (int i = 0; i < Agents.size(); i++) {
+			Algorithm alg = ((AgentThread) Agents.elementAt(i)).algorithm;
+			if (alg.localAgentID == Master.masterID)
+				continue;
+			alg.synchronous = true;
+			/* message loss follows from the agent, not from the threads */
+			alg.rng = new Random(31L * alg.localAgentID);
+			agents[n] = alg;
+			outbox[n] = new LinkedList();
+			posOf[alg.localAgentID] = n;
+			n++;
+		}
+	}
+
+	/* hold agent messages until the end of the cycle.  the Master's get
+	 * through right away, it only reads them between cycles. */
+	public void sendMessage(Message m, int destAgent, boolean cntFlag) {
+		if (destAgent == Master.masterID || m.sourceAgent == Master.masterID) {
+			super.sendMessage(m, destAgent, cntFlag);
+			return;
+		}
+		outbox[posOf[m.sourceAgent]].addLast(new Pending(m, destAgent, cntFlag));
+	}
+
+	/* deliver the messages of the cycle, sender by sender */
+	void flush() {
+		for (int i = 0; i < outbox.length; i++) {
+			LinkedList q = outbox[i];
+			while (q.size() > 0) {
+				Pending p = (Pending) q.removeFirst();
+				super.sendMessage(p.msg, p.dest, p.cntFlag);
+			}
+		}
+	}
+
+	boolean ready(Algorithm alg) {
+		return !alg.iWantToTerminate && (alg.hasWork() || !bus.mailboxOf(alg.localAgentID).isEmpty());
+	}
+
+	/* the barrier action, run by the last thread to arrive.  returns true
+	 * to end the run. */
+	boolean endCycle() {
+		long ns = System.nanoTime() - cycleStart;
+		totalCycleNs += ns;
+		if (ns > maxCycleNs)
+			maxCycleNs = ns;
+		numCycles++;
+		flush();
+		master.step();
+		if (errorCondition || allTerminated())
+			return true;
+		boolean progress = false;
+		for (int i = 0; i < agents.length && !progress; i++)
+			progress = ready(agents[i]);
+		if (!progress) {
+			String s = "  No agent can make progress";
+			System.out.println(s + Instrumentation.fillerString(s) + numCycles);
+			nLog.printToLogln("Error deadlock " + numCycles);
+			errorCondition = true;
+			return true;
+		}
+		if (Utility.TimeSec() > timeMax) {
+			String s = "  Max Time Elapsed";
+			System.out.println(s + Instrumentation.fillerString(s) + Utility.TimeSec());
+			nLog.printToLogln("Error maxtime " + timeMax);
+			errorCondition = true;
+			return true;
+		}
+		cycleStart = System.nanoTime();
+		return false;
+	}
+
+	/* runs the agents index, index + numThreads, ... every cycle */
+	class Worker extends Thread {
+		int index;
+
+		Worker(int index) {
+			this.index = index;
+			setName("cycle-" + index);
+		}
+
+		public void run() {
+			while (!phaser.isTerminated()) {
+				try {
+					for (int i = index; i < agents.length; i += numThreads) {
+						if (ready(agents[i]))
+							agents[i].step();
+					}
+				} catch (Throwable e) {
+					System.out.println("CycleSimulator: agent failed in cycle " + (numCycles + 1) + ": " + e);
+					e.printStackTrace();
+					errorCondition = true;
+				}
+				phaser.arriveAndAwaitAdvance();
+			}
+		}
+	}
+
+	public void run() {
+
+		/* one thread delivers: a blocked sender would wait for ever */
+		Mailbox.blockMS = 0;
+
+		loadProblem();
+		createAgents();
+		master = master();
+		if (numThreads > agents.length)
+			numThreads = Math.max(agents.length, 1);
+
+		Utility.Dprint("CycleSimulator(): Begin CycleSimulator run...");
+		System.out.println("Begin algorithm execution (synchronous cycles, " + numThreads + " threads)...");
+
+		timeStart = Utility.TimeMS();
+
+		/* set up each agent: its initial messages go out in cycle 1 */
+		for (int i = 0; i < agents.length; i++)
+			agents[i].setup();
+		flush();
+
+		phaser = new Phaser(numThreads) {
+			protected boolean onAdvance(int phase, int parties) {
+				return endCycle();
+			}
+		};
+		Worker workers[] = new Worker[numThreads];
+		cycleStart = System.nanoTime();
+		for (int i = 0; i < numThreads; i++) {
+			workers[i] = new Worker(i);
+			workers[i].start();
+		}
+		for (int i = 0; i < numThreads; i++) {
+			try {
+				workers[i].join();
+			} catch (InterruptedException e) {
+			}
+		}
+
+		double t = (Utility.TimeMS() - (double) timeStart) / 1000;
+		String s = "  All agents terminated";
+		System.out.println(s + Instrumentation.fillerString(s) + t);
+		s = "  Synchronous cycles";
+		System.out.println(s + Instrumentation.fillerString(s) + " " + numCycles);
+		double mean = numCycles == 0 ? 0 : totalCycleNs / 1e6 / numCycles;
+		s = "  Cycle time (mean,max ms)";
+		System.out.println(s + Instrumentation.fillerString(s) + " " + mean + " " + maxCycleNs / 1e6);
+		s = "  Total msgs sent";
+		System.out.println(s + Instrumentation.fillerString(s) + " " + bus.msgCount());
+
+		/* let the master collect the final reports */
+		master.agentsAlive = false;
+		while (!master.iWantToTerminate)
+			master.step();
+
+		/* ending time is the latest ending time of any agent */
+		timeEnd = 0;
+		for (int i = 0; i < agents.length; i++) {
+			if (agents[i].timeEnd > timeEnd)
+				timeEnd = agents[i].timeEnd;
+		}
+		double elapsed = ((double) timeEnd - timeStart) / 1000;
+
+		reportSolution(master, elapsed, errorCondition);
+		nLog.printToLogln("Threads " + numThreads);
+		nLog.printToLogln("Cycles " + numCycles);
+		nLog.printToLogln("CycleTimeMS " + mean + " " + maxCycleNs / 1e6);
+
+		System.out.println("********* TotalTime (secs) " + elapsed + " (" + numCycles + " cycles) *********");
+		System.out.println("********* Thanks for playing ************");
+		System.exit(0);
+	}
+
+	public static void main(String argv[]) {
+		if (argv.length != 3 && argv.length != 4) {
+			System.out.println("Usage: CycleSimulator " + "<algorithm-name> <problem-type> <input-filename> [threads]");
+			System.exit(0);
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (argv.length == 4)
+			threads = Integer.parseInt(argv[3]);
+		String args[] = new String[] { argv[0], argv[1], argv[2] };
+		CycleSimulator sim = new CycleSimulator(args, threads);
+		sim.run();
+	}
+}
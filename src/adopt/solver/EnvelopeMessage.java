@@ -0,0 +1,51 @@
+/**
+  * ENVELOPE message: all messages one agent's pseudo-agents sent to
+  * the same destination agent during one cycle, shipped as a single
+  * message on the bus.  The receiver unpacks it into its per-variable
+  * input queues.
+  *
+  * Sender-side batching is on by default; -DAdoptBatch=false turns it
+  * off.
+  */
+
+package adopt.solver;
+
+import java.util.*;
+
+public class EnvelopeMessage extends Message {
+
+  /* is sender-side batching turned on? */
+  public static boolean enabled = !"false".equals(System.getProperty("AdoptBatch"));
+
+  /* the batched messages, in send order */
+  public Vector msgs = new Vector();
+
+  public EnvelopeMessage (int destAgent, int sourceAgent) {
+    super(ENVELOPE, destAgent, sourceAgent, -1, -1);
+  }
+
+  public void add(Message m) {
+    msgs.add(m);
+  }
+
+  public Message elementAt(int i) {
+    return (Message) msgs.elementAt(i);
+  }
+
+  public int size() {
+    return msgs.size();
+  }
+
+  /* every batched message counts */
+  public int count() {
+    return msgs.size();
+  }
+
+  /* Msg format: "ENVELOPE <n> [<msg>] [<msg>] ..." */
+  public String rawMessage() { 
+    StringBuffer sb = new StringBuffer("ENVELOPE " + msgs.size());
+    for(int i=0;i<msgs.size();i++)
+      sb.append(" [").append(elementAt(i).rawMessage()).append("]");
+    return sb.toString();
+  }
+}
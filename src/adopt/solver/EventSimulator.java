@@ -0,0 +1,161 @@
+/*
+ *    EventSimulator.java
+ *    Date: Oct 18 2026
+ *
+ *    Runs a DCOP algorithm as a discrete-event simulation on a single
+ *    thread.  Each event is one step() of one agent, chosen by a seeded
+ *    scheduler among the agents that have messages waiting, and time is
+ *    a virtual clock advanced per event.  A given seed always gives the
+ *    same message interleaving, message counts and solution.
+ *
+ *    With -DAdoptNetwork (see NetworkModel) messages take virtual time
+ *    to arrive; when no agent has anything to do the clock jumps to
+ *    the next delivery.
+ */
+
+package adopt.solver;
+
+import adopt.common.*;
+import adopt.problem.*;
+
+import java.util.*;
+
+public class EventSimulator extends Simulator {
+
+	/* virtual ms that pass per event */
+	public static int tick = 1;
+	/* how often (virtual ms) the Master wakes up */
+	public static int masterInterval = 1000;
+
+	/* scheduler seed */
+	long seed;
+	/* chooses which ready agent runs next */
+	Random sched;
+	/* number of events (agent steps) executed */
+	long numEvents = 0;
+
+	public EventSimulator(String args[], long seed) {
+		super(args);
+		this.seed = seed;
+		sched = new Random(seed);
+	}
+
+	public void run() {
+
+		/* all of Utility.Time*() now read the virtual clock */
+		Utility.virtualTime = 0;
+		/* one thread: nobody could make room for a blocked sender */
+		Mailbox.blockMS = 0;
+
+		loadProblem();
+		createAgents();
+
+		/* per-agent random numbers (message loss) follow from the seed too */
+		for (int i = 0; i < Agents.size(); i++) {
+			AgentThread at = (AgentThread) Agents.elementAt(i);
+			at.algorithm.rng = new Random(seed + 31L * at.algorithm.localAgentID);
+		}
+
+		Utility.Dprint("EventSimulator(): Begin EventSimulator run...");
+		System.out.println("Begin algorithm execution (event engine, seed " + seed + ")...");
+
+		long wallStart = System.currentTimeMillis();
+		timeStart = Utility.TimeMS();
+		boolean errorCondition = false;
+		Master master = master();
+
+		/* set up each agent: this sends the initial messages */
+		for (int i = 0; i < Agents.size(); i++) {
+			AgentThread at = (AgentThread) Agents.elementAt(i);
+			if (at.algorithm.localAgentID != Master.masterID)
+				at.algorithm.setup();
+		}
+
+		NetworkBus net = (bus instanceof NetworkBus) ? (NetworkBus) bus : null;
+		Vector ready = new Vector();
+		long nextMasterTime = masterInterval;
+		while (!allTerminated()) {
+			if (net != null)
+				net.deliverDue();
+			/* which agents have something to do? */
+			ready.clear();
+			for (int i = 0; i < Agents.size(); i++) {
+				AgentThread at = (AgentThread) Agents.elementAt(i);
+				Algorithm alg = at.algorithm;
+				if (alg.localAgentID == Master.masterID || alg.iWantToTerminate)
+					continue;
+				if (alg.hasWork() || !bus.mailboxOf(alg.localAgentID).isEmpty())
+					ready.add(alg);
+			}
+			if (ready.size() == 0) {
+				/* nothing to do until the next message arrives */
+				if (net != null && net.nextDue() >= 0) {
+					Utility.virtualTime = (net.nextDue() + 999) / 1000;
+					continue;
+				}
+				String s = "  No agent can make progress";
+				System.out.println(s + Instrumentation.fillerString(s) + Utility.TimeMS());
+				nLog.printToLogln("Error deadlock " + Utility.TimeMS());
+				errorCondition = true;
+				break;
+			}
+
+			/* one event */
+			Algorithm alg = (Algorithm) ready.elementAt(sched.nextInt(ready.size()));
+			alg.step();
+			numEvents++;
+			Utility.virtualTime += tick;
+
+			if (Utility.virtualTime >= nextMasterTime) {
+				master.step();
+				nextMasterTime += masterInterval;
+			}
+			if (Utility.TimeSec() > timeMax) {
+				String s = "  Max Time Elapsed";
+				System.out.println(s + Instrumentation.fillerString(s) + Utility.TimeSec());
+				nLog.printToLogln("Error maxtime " + timeMax);
+				errorCondition = true;
+				break;
+			}
+		}
+
+		double t = (Utility.TimeMS() - (double) timeStart) / 1000;
+		String s = "  All agents terminated";
+		System.out.println(s + Instrumentation.fillerString(s) + t);
+		s = "  Total events";
+		System.out.println(s + Instrumentation.fillerString(s) + " " + numEvents);
+		s = "  Total msgs sent";
+		System.out.println(s + Instrumentation.fillerString(s) + " " + bus.msgCount());
+
+		/* let the master collect the final reports */
+		master.agentsAlive = false;
+		while (!master.iWantToTerminate)
+			master.step();
+
+		/* ending time is the latest ending time of any agent */
+		timeEnd = latestEndTime();
+		double elapsed = ((double) timeEnd - timeStart) / 1000;
+
+		reportSolution(master, elapsed, errorCondition);
+		nLog.printToLogln("Seed " + seed);
+		nLog.printToLogln("TotalEvents " + numEvents);
+
+		double wall = (System.currentTimeMillis() - (double) wallStart) / 1000;
+		System.out.println("********* TotalTime (virtual secs) " + elapsed + " (wall " + wall + ") *********");
+		System.out.println("********* Thanks for playing ************");
+		System.exit(0);
+	}
+
+	public static void main(String argv[]) {
+		if (argv.length != 3 && argv.length != 4) {
+			System.out.println("Usage: EventSimulator " + "<algorithm-name> <problem-type> <input-filename> [seed]");
+			System.exit(0);
+		}
+		long seed = 0;
+		if (argv.length == 4)
+			seed = Long.parseLong(argv[3]);
+		String args[] = new String[] { argv[0], argv[1], argv[2] };
+		EventSimulator sim = new EventSimulator(args, seed);
+		sim.run();
+	}
+}
@@ -20,22 +20,33 @@ public class IntraSBB extends Intradopt{
 
   public IntraSBB(int agentID, Problem p, MessageSender mSndr){
     super(agentID,p,mSndr);
+    /* a TERMINATE must not overtake the TOKENs sent before it */
+    priority = MessageScheduler.FIFO;
   } 
 
   public void run() {
 
     Utility.Dprint("  Running IntrSBB()...");
+    if(!setup())
+      return;
+
+    /* begin processing messages */
+    handleMsgs();
+  }
+
+  public boolean setup() {
+
     /* problem set up */
     Vector vec= pbm.getVariablesFromAgentID(localAgentID);
     if(vec.size() == 0){
       Utility.Dprint("Can't find any variables for agent: " + localAgentID); 
-      return;
+      return false;
     }
 
     /* set up an input message queue for each variable */
     for(int i=0;i<vec.size();i++){
       Variable var = (Variable) vec.elementAt(i);
-      addMsgReceiver(var.uniqueNameOf());
+      addMsgReceiver(var);
     }
 
     /* create a pseudoagent for each variable I own */
@@ -44,65 +55,39 @@ public class IntraSBB extends Intradopt{
       Variable var = (Variable) vec.elementAt(i);
       SBB adpt = null;
       adpt = new SBB(pbm, var, this);
-      pseudoAgents.add(adpt);
+      addPseudoAgent(adpt);
     }
 
-    /* get each solver started */
+    /* get each solver started.  SBB's handlers send, so messages
+       between its pseudoagents are always queued (no direct dispatch). */
     for(int i=0;i<pseudoAgents.size();i++){
       SBB adpt = (SBB) pseudoAgents.elementAt(i);
       adpt.init();
     }
-
-    /* begin processing messages */
-    handleMsgs();
+    return true;
   }
 
   public void handleOneMsg(Message msg){
 
-    String msgstring = ((Message)msg).rawMessage();
-    StringTokenizer stok = new StringTokenizer(msgstring);
-    String firstword = stok.nextToken();
-    
-    /* Msg format: "TOKEN <destvariable> <sourcevariable> <cost> <context> " */
-    if(firstword.equals(SBB.TOKEN))
-      {
-	String destvar = stok.nextToken();
-	String sourcevar = stok.nextToken();
-	StringBuffer sb = new StringBuffer();
-	String coststring = stok.nextToken();
- 	int cost = (new Integer(coststring)).intValue();
-
-	while(stok.hasMoreTokens())
-	  sb.append(" " + stok.nextToken());
-
-	/* invoke the necessary solver */
-	for(int i=0;i<pseudoAgents.size();i++){
-	  SBB adpt = (SBB) pseudoAgents.elementAt(i);
-	  if(adpt.x_i.uniqueNameOf().equals(destvar)){
-	    Context vvw = parseContext(sb.toString());
-	    adpt.whenReceivedTOKEN(vvw, cost, sourcevar);
-	  }
-	}
+    if(msg.kind == Message.TOKEN){
+      TokenMessage tm = (TokenMessage) msg;
+      /* invoke the necessary solver */
+      SBB adpt = (SBB) pseudoAgentOf(tm.destVar);
+      if(adpt != null){
+	Context vvw = Context.fromIDs(pbm, tm.ctxVars, tm.ctxVals);
+	Variable source = pbm.getVariableFromID(tm.sourceVar);
+	adpt.whenReceivedTOKEN(vvw, tm.cost, source);
       }
-    else if(firstword.equals(SBB.TERM)){
-
-      String destvar = stok.nextToken();
-      String sourcevar = stok.nextToken();
-      String coststring = stok.nextToken();
-      int cost = (new Integer(coststring)).intValue();
-
-      StringBuffer sb = new StringBuffer();
-      while(stok.hasMoreTokens())
-	sb.append(" " + stok.nextToken());
+    }
+    else if(msg.kind == Message.TERMINATE){
+      TerminateMessage tm = (TerminateMessage) msg;
       /* invoke the necessary solver */
-      for(int i=0;i<pseudoAgents.size();i++){
-	SBB adpt = (SBB) pseudoAgents.elementAt(i);
-	if(adpt.x_i.uniqueNameOf().equals(destvar)){
-	  Context vvw = parseContext(sb.toString());
-	  adpt.whenReceivedTERMINATE(vvw, cost, sourcevar);
-	}
+      SBB adpt = (SBB) pseudoAgentOf(tm.destVar);
+      if(adpt != null){
+	Context vvw = Context.fromIDs(pbm, tm.ctxVars, tm.ctxVals);
+	Variable source = pbm.getVariableFromID(tm.sourceVar);
+	adpt.whenReceivedTERMINATE(vvw, tm.cost, source);
       }
     }
   }
 }
-  
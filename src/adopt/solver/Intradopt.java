@@ -20,37 +20,172 @@ public class Intradopt extends Algorithm{
   /* list of pseudo-agents, one for each variable I own */
   Vector pseudoAgents;
   
-  /* input message queues for each pseudoAgent.  */
-  Hashtable msgQs = null;
+  /* input message queues for each pseudoAgent, indexed by varID.  */
+  MessageScheduler[] msgQs = null;
+  /* order in which they hand out messages, see MessageScheduler */
+  int priority = MessageScheduler.defaultMode;
+  /* my pseudoagents, indexed by varID */
+  Adopt[] byVar = null;
   /* input message queue buffer */
   LinkedList bufferedMsgs = null;
+  /* if not null, newer VALUE messages supersede older ones still
+     waiting on an input message queue */
+  ValueCoalescer coalescer = null;
+  /* outgoing envelope for each destination agent, indexed by agent
+     ID, and the IDs in the order they were first used. flushed once
+     per cycle. */
+  EnvelopeMessage[] outbox = null;
+  int[] outboxOrder = null;
+  int numOutbox = 0;
+  /* -DAdoptDirect=false sends messages between my own pseudoagents
+     through bufferedMsgs like any other message.  otherwise, once
+     setup() has initialized them all, they call each other's
+     handlers directly (see dispatchVALUE() etc.). */
+  public static boolean directDispatch = !"false".equals(System.getProperty("AdoptDirect"));
+  boolean direct = false;
+  /* pseudoagents that got a direct message since they last ran */
+  HashSet woken = new HashSet();
+  /* number of messages dispatched directly */
+  long localMsgCnt = 0;
+  /* messages received and pseudoagents run in the last cycle */
+  int cycleWork = 0;
 
   public Intradopt(int agentID, Problem p, MessageSender mSndr){
     super(agentID,p,mSndr);
-    msgQs = new Hashtable();
+    msgQs = new MessageScheduler[0];
+    byVar = new Adopt[0];
     bufferedMsgs = new LinkedList();
+    if(ValueCoalescer.enabled)
+      coalescer = new ValueCoalescer();
+    if(EnvelopeMessage.enabled){
+      outbox = new EnvelopeMessage[0];
+      outboxOrder = new int[0];
+    }
   } 
 
+  /* make room in msgQs and byVar for 'varID' */
+  void growVarTables(int varID){
+    if(varID < msgQs.length)
+      return;
+    int n = Math.max(varID + 1, 2 * msgQs.length);
+    MessageScheduler[] q = new MessageScheduler[n];
+    System.arraycopy(msgQs, 0, q, 0, msgQs.length);
+    msgQs = q;
+    Adopt[] a = new Adopt[n];
+    System.arraycopy(byVar, 0, a, 0, byVar.length);
+    byVar = a;
+  }
+
   /*Create a msg queue for the given pseudo-agent. */
-  public void addMsgReceiver(String uname){
-    LinkedList msgQ = new LinkedList(); 
-    msgQs.put(uname, msgQ);
+  public void addMsgReceiver(Variable var){
+    growVarTables(var.varID);
+    msgQs[var.varID] = new MessageScheduler(priority);
+  }
+
+  /* add 'adpt' to my pseudoagents */
+  public void addPseudoAgent(Adopt adpt){
+    pseudoAgents.add(adpt);
+    growVarTables(adpt.x_i.varID);
+    byVar[adpt.x_i.varID] = adpt;
+  }
+
+  /* input message queue of the pseudo-agent for variable 'varID' */
+  public MessageScheduler msgQOf(int varID){
+    if(varID < 0 || varID >= msgQs.length)
+      return null;
+    return msgQs[varID];
+  }
+
+  /* my pseudo-agent for variable 'varID', or null */
+  public Adopt pseudoAgentOf(int varID){
+    if(varID < 0 || varID >= byVar.length)
+      return null;
+    return byVar[varID];
+  }
+
+  /* remove the next message from 'q' that has not been superseded,
+     or return null if there is none */
+  Message nextMsg(MessageScheduler q){
+    while(q.size() > 0){
+      Message msg = q.poll();
+      if(coalescer == null || !coalescer.isStale(msg))
+	return msg;
+    }
+    return null;
+  }
+
+  /* send every non-empty envelope in the outbox. an envelope holding
+     a single message is sent as that message. */
+  public void flushOutbox(){
+    if(outbox == null || numOutbox == 0)
+      return;
+    for(int i=0;i<numOutbox;i++){
+      int dest = outboxOrder[i];
+      EnvelopeMessage env = outbox[dest];
+      outbox[dest] = null;
+      if(env.size() == 1)
+	mSender.sendMessage(env.elementAt(0), dest, true);
+      else
+	mSender.sendMessage(env, dest, true);
+    }
+    numOutbox = 0;
+  }
+
+  /* put 'msg' on the input message queue of its destination
+     pseudoagent, unpacking envelopes */
+  void enqueueMsg(Message msg){
+    if(msg.kind == Message.ENVELOPE){
+      EnvelopeMessage env = (EnvelopeMessage) msg;
+      for(int i=0;i<env.size();i++)
+	enqueueMsg(env.elementAt(i));
+      return;
+    }
+    MessageScheduler q = msgQOf(msg.destVar);
+    if(coalescer != null)
+      coalescer.offered(msg);
+    q.add(msg);
+  }
+
+  public long numSuperseded(){
+    if(coalescer == null)
+      return 0;
+    return coalescer.numSuperseded();
+  }
+
+  public long numStaleCosts(){
+    long cnt = 0;
+    for(int i=0;i<msgQs.length;i++){
+      if(msgQs[i] != null)
+	cnt += msgQs[i].numStale();
+    }
+    return cnt;
   }
 
   public void run() {
 
     Utility.Dprint("  Running Intradopt()...");
+    if(!setup())
+      return;
+
+    /* begin processing messages */
+    handleMsgs();
+  }
+
+  /* problem set up: create and start a pseudo-agent for each variable
+     I own.  returns false if I own no variables. */
+  public boolean setup() {
+
     /* problem set up */
     Vector vec= pbm.getVariablesFromAgentID(localAgentID);
     if(vec.size() == 0){
       Utility.Dprint("Can't find any variables for agent: " + localAgentID); 
-      return;
+      return false;
     }
 
     /* set up an input message queue for each variable */
     for(int i=0;i<vec.size();i++){
       Variable var = (Variable) vec.elementAt(i);
-      addMsgReceiver(var.uniqueNameOf());
+      addMsgReceiver(var);
     }
 
     /* create a pseudoagent for each variable I own */
@@ -59,92 +194,188 @@ public class Intradopt extends Algorithm{
       Variable var = (Variable) vec.elementAt(i);
       Adopt adpt = null;
       adpt = new Adopt(pbm, var, true, true, this);
-      pseudoAgents.add(adpt);
+      addPseudoAgent(adpt);
     }
 
-    /* get each solver started */
+    /* get each solver started.  all of them are initialized before
+       any can get a direct message. */
     for(int i=0;i<pseudoAgents.size();i++){
       Adopt adpt = (Adopt) pseudoAgents.elementAt(i);
       adpt.init();
+    }
+    direct = directDispatch;
+    for(int i=0;i<pseudoAgents.size();i++){
+      Adopt adpt = (Adopt) pseudoAgents.elementAt(i);
+      woken.remove(adpt);
       adpt.backtrack();
+      publishValue(adpt);
     }
+    return true;
+  }
 
-    /* begin processing messages */
-    handleMsgs();
+  /* my pseudoagent for 'varID', if messages to it may be dispatched
+     directly */
+  public Adopt localPeer(int varID){
+    if(!direct)
+      return null;
+    return pseudoAgentOf(varID);
   }
 
-  public void handleMsgs(){
-    Message msg = null;
-    long tprime = Utility.TimeMS();
+  /* a pseudoagent sends a VALUE to another of mine: run the handler
+     now, and have 'dest' backtrack in this cycle or the next.
+     handlers never send, so this does not recurse; and every message
+     on the link goes this way, so it stays in order. */
+  public void dispatchVALUE(Adopt dest, Variable src, Value val, int thresh){
+    localMsgCnt++;
+    if(dest.iWantToTerminate || timeToLoseMsg2())
+      return;
+    dest.whenReceivedVALUE(src, val, thresh);
+    woken.add(dest);
+  }
+
+  /* as dispatchVALUE(), for a COST.  'vw' is copied, the sender may
+     still change it. */
+  public void dispatchCOST(Adopt dest, Variable child, Context vw, int lb, int ub){
+    localMsgCnt++;
+    if(dest.iWantToTerminate || timeToLoseMsg2())
+      return;
+    dest.whenReceivedCOST(new Context(vw), lb, ub, child);
+    woken.add(dest);
+  }
 
+  public void dispatchTERMINATE(Adopt dest){
+    localMsgCnt++;
+    if(dest.iWantToTerminate)
+      return;
+    dest.whenReceivedTERMINATE();
+    woken.add(dest);
+  }
+
+  public long numLocalMsgs(){
+    return localMsgCnt;
+  }
+
+  public void handleMsgs(){
     Utility.Dprint("Entering handleMsgs():...", Utility.TRACE_RIDICULOUS_LEVEL);
     Utility.Dprint("  Waiting for incoming msg...", Utility.MSG_LEVEL3);
     while(!iWantToTerminate){
-      cycleCnt++;
-      /* deliver messages to each pseudoagent */
-      for(int i=0;i<pseudoAgents.size();i++){
-	Adopt adpt = (Adopt) pseudoAgents.elementAt(i);
-	String uname = adpt.x_i.uniqueNameOf();
-	boolean msgDelivered = false;
+      step();
+      /* a parking agent waits for messages in step() */
+      if(idle != null && !idle.parks())
+	idle.idle(cycleWork);
+    }
+  }
+
+  /* One execution cycle: deliver queued messages to each pseudoagent,
+     then collect messages from other agents.  a synchronous agent
+     collects first, so that it handles the messages sent in the
+     previous cycle in this one. */
+  public void step(){
+    Message msg = null;
+
+    cycleCnt++;
+    if(synchronous)
+      collectMsgs(false);
+    /* anything left over from setup() */
+    flushOutbox();
+    /* did any pseudoagent get to execute this cycle? */
+    boolean busy = false;
+    cycleWork = 0;
+    /* deliver messages to each pseudoagent */
+    for(int i=0;i<pseudoAgents.size();i++){
+      Adopt adpt = (Adopt) pseudoAgents.elementAt(i);
+      boolean msgDelivered = woken.remove(adpt);
 	
-	LinkedList q = (LinkedList) msgQs.get(uname);
-	try{msg = (Message) q.removeFirst();}
-	catch(NoSuchElementException ex){ msg = null;}
-	while(msg != null){
-	  /* deliver message */
-	  handleOneMsg(msg);
-	  msgDelivered = true;
-	  try{msg = (Message) q.removeFirst();}
-	  catch(NoSuchElementException ex){ msg = null;}
-	}
-	/* allow pseudoagent to execute */
-	if(msgDelivered){
-	  Utility.Dprint("   "+uname+" executing...", Utility.MSG_LEVEL);
-	  adpt.backtrack();
-	}
+      MessageScheduler q = msgQOf(adpt.x_i.varID);
+      msg = nextMsg(q);
+      while(msg != null){
+	/* deliver message */
+	handleOneMsg(msg);
+	msgDelivered = true;
+	msg = nextMsg(q);
       }
-      
-      /* report current variable values to Master agent (every 10 secs) */
-      if(Utility.TimeMS() - lastReportTime > reportInterval){
-	reportValuesToMaster();
-	lastReportTime = Utility.TimeMS();
-	/* also log some data */
-	logData();
+      /* allow pseudoagent to execute */
+      if(msgDelivered){
+	Utility.Dprint("   "+adpt.x_i.uniqueNameOf()+" executing...", Utility.MSG_LEVEL);
+	adpt.backtrack();
+	busy = true;
+	cycleWork++;
+	publishValue(adpt);
       }
+    }
+    /* ship everything the pseudoagents sent this cycle */
+    flushOutbox();
       
-      /* get messages from other agents */
-      msg = mSender.getMessage("agent"+localAgentID);
-      while(msg!=null){
-	bufferedMsgs.addLast(msg);
-	numMsgsRcvd++;
-	msg = mSender.getMessage("agent"+localAgentID);
-      } 
+    /* report current variable values to Master agent (every 10 secs) */
+    if(Utility.TimeMS() - lastReportTime > reportInterval){
+      reportValuesToMaster();
+      lastReportTime = Utility.TimeMS();
+      /* also log some data */
+      logData();
+    }
+      
+    if(!synchronous)
+      collectMsgs(busy);
+    /* check for termination */
+    if(checkForTermination2()){
+      /* record time of termination */
+      timeEnd = Utility.TimeMS();
+      reportValuesToMaster();
+      logData();
+      System.out.println("       agent" + localAgentID + "'s  cycle cnt: " + cycleCnt);
+      terminate();
+    }
+  }
+
+  /* get messages from other agents onto the input message queues.
+     if nothing happened this cycle ('busy' is false) and nothing is
+     buffered, we may park until a message arrives.  with bounded
+     mailboxes take at most a mailbox full, the rest waits in the
+     mailbox for the next cycle. */
+  void collectMsgs(boolean busy){
+    Message msg;
+    if(idle != null && idle.parks() && !busy && bufferedMsgs.size() == 0)
+      msg = mSender.waitMessage(localAgentID, timeToNextReport());
+    else
+      msg = mSender.getMessage(localAgentID);
+    int limit = Mailbox.pollLimit();
+    int polled = 0;
+    while(msg!=null){
+      bufferedMsgs.addLast(msg);
+      numMsgsRcvd += msg.count();
+      cycleWork++;
+      if(++polled >= limit)
+	break;
+      msg = mSender.getMessage(localAgentID);
+    } 
       
-      /* put buffered messages on appropriate input message queue */
-      msg=null;
+    /* put buffered messages on appropriate input message queue */
+    msg=null;
+    try{msg = (Message) bufferedMsgs.removeFirst();}
+    catch(NoSuchElementException ex){ msg = null;}
+    while(msg != null){
+      enqueueMsg(msg);
       try{msg = (Message) bufferedMsgs.removeFirst();}
       catch(NoSuchElementException ex){ msg = null;}
-      while(msg != null){
-	String msgstring = ((Message)msg).rawMessage();
-	StringTokenizer stok = new StringTokenizer(msgstring);
-	String firstword = stok.nextToken();
-	String dest = stok.nextToken();
-	LinkedList q = (LinkedList) msgQs.get(dest);
-	q.addLast(msg);
-	try{msg = (Message) bufferedMsgs.removeFirst();}
-	catch(NoSuchElementException ex){ msg = null;}
-      }
-      /* check for termination */
-      if(checkForTermination2()){
-	iWantToTerminate = true;
-	/* record time of termination */
-	timeEnd = Utility.TimeMS();
-	reportValuesToMaster();
-	logData();
-	System.out.println("       agent" + localAgentID + "'s  cycle cnt: " + cycleCnt);
-      }
     }
-  }      
+  }
+
+  /* is anything queued for one of my pseudoagents? */
+  public boolean hasWork(){
+    if(pseudoAgents == null)
+      return false;
+    if(bufferedMsgs.size() > 0 || woken.size() > 0)
+      return true;
+    if(numOutbox > 0)
+      return true;
+    for(int i=0;i<pseudoAgents.size();i++){
+      Adopt adpt = (Adopt) pseudoAgents.elementAt(i);
+      MessageScheduler q = msgQOf(adpt.x_i.varID);
+      if(q.size() > 0)
+	return true;
+    }
+    return false;
+  }
 
   public boolean checkForTermination2(){
     for(int i=0;i<pseudoAgents.size();i++){
@@ -156,8 +387,8 @@ public class Intradopt extends Algorithm{
     return true;
   }
 
-  public boolean messageWanted(Adopt adpt, String destvar){
-    if(adpt.x_i.uniqueNameOf().equals(destvar) &&    
+  public boolean messageWanted(Adopt adpt, int destvar){
+    if(adpt != null && adpt.x_i.varID == destvar &&    
        !adpt.iWantToTerminate){
       return true;
     }
@@ -166,69 +397,46 @@ public class Intradopt extends Algorithm{
 
   public void handleOneMsg(Message msg){
 
-    String msgstring = ((Message)msg).rawMessage();
-    StringTokenizer stok = new StringTokenizer(msgstring);
-    String firstword = stok.nextToken();
-    
-    if(firstword.equals(Adopt.TERM)){
-      String destvar = stok.nextToken();
-      String sourcevar = stok.nextToken();
-      /* invoke the necessary pseudoAgent */
-      for(int i=0;i<pseudoAgents.size();i++){
-	Adopt adpt = (Adopt) pseudoAgents.elementAt(i);
-	if(messageWanted(adpt, destvar)){
-	  adpt.whenReceivedTERMINATE();
-	}
-      }
+    /* the necessary pseudoAgent */
+    Adopt adpt = pseudoAgentOf(msg.destVar);
+    if(!messageWanted(adpt, msg.destVar))
+      return;
+    if(msg.kind == Message.TERMINATE){
+      adpt.whenReceivedTERMINATE();
     }
     else if(!timeToLoseMsg2()){
 
-      /* Msg format: "VALUE  <destvariable> <THRESHOLD> <variable> <value> " */
-      if(firstword.equals(Adopt.VALUE)){
-	String destvar = stok.nextToken();
-	int flimit = (new Integer(stok.nextToken())).intValue();
-	String v2 = stok.nextToken();
-	String val2 = stok.nextToken();
-	/* invoke the necessary pseudoAgent */	
-	for(int i=0;i<pseudoAgents.size();i++){
-	  Adopt adpt = (Adopt) pseudoAgents.elementAt(i);
-	  if(messageWanted(adpt, destvar)){
-	    Variable vvar = (Variable) pbm.getVariableFromUniqueVarName(v2);
-	    Value vval = vvar.getValue(val2);
-	    adpt.whenReceivedVALUE(vvar, vval, flimit);
-	  }
-	}
+      if(msg.kind == Message.VALUE){
+	ValueMessage vm = (ValueMessage) msg;
+	Variable vvar = pbm.getVariableFromID(vm.sourceVar);
+	Value vval = vvar.domain()[vm.value];
+	adpt.whenReceivedVALUE(vvar, vval, vm.threshold);
       }
-      /* Msg format: "COST  <destvariable> <sourcevariable> <lb> <ub> <context>" */
-      else if(firstword.equals(Adopt.COST)){
-	String destvar = stok.nextToken();
-	String sourcestr = stok.nextToken();
-	int lb = (new Integer(stok.nextToken())).intValue();
-	int ub = (new Integer(stok.nextToken())).intValue();
-	StringBuffer sb = new StringBuffer();
-	while(stok.hasMoreTokens())
-	  sb.append(" " + stok.nextToken());
-	/* invoke the necessary pseudoAgent */
-	for(int i=0;i<pseudoAgents.size();i++){
-	  Adopt adpt = (Adopt) pseudoAgents.elementAt(i);
-	  if(messageWanted(adpt, destvar)){
-	    Context vvw = parseContext(sb.toString());
-	    adpt.whenReceivedCOST(vvw, lb, ub, sourcestr);
-	  }
-	}
+      else if(msg.kind == Message.COST){
+	CostMessage cm = (CostMessage) msg;
+	Context vvw = Context.fromIDs(pbm, cm.ctxVars, cm.ctxVals);
+	Variable child = pbm.getVariableFromID(cm.sourceVar);
+	adpt.whenReceivedCOST(vvw, cm.lb, cm.ub, child);
       }
     }
   }
 
+  /* put the current value of 'adpt' on the board, if there is one */
+  void publishValue(Adopt adpt){
+    if(board != null && adpt.d_i != null)
+      board.publish(adpt.x_i.varID, adpt.x_i.indexOf(adpt.d_i));
+  }
+
   public void reportValuesToMaster(){
     for(int i=0;i<pseudoAgents.size();i++){
       Adopt adpt = (Adopt) pseudoAgents.elementAt(i);
-	/* Msg format: "STATUS <unique name> <current val> <cost>" */
-	String rawmsg = "STATUS " + adpt.x_i.uniqueNameOf() + 
-	  " " + adpt.d_i.toString() + " " + 0;
-	
-	mSender.sendMessage(new Message(Master.masterID, localAgentID, rawmsg),
-			    "agent"+Master.masterID, false);
+      if(board != null){
+	publishValue(adpt);
+	continue;
+      }
+      Message msg = new StatusMessage(Master.masterID, localAgentID, adpt.x_i.varID, 
+				      adpt.x_i.indexOf(adpt.d_i));
+      mSender.sendMessage(msg, Master.masterID, false);
     }
   }
 
@@ -244,14 +452,35 @@ public class Intradopt extends Algorithm{
   }
 
   /* Override Algorithm.sendMessage:
-     (check to see if message is going from one pseudoagent to another) 
+     (check to see if message is going from one pseudoagent to another,
+     otherwise batch it per destination agent)
      'cntFlag': count this message in the final stats? */
-  public void sendMessage(Message m, String aname, boolean cntFlag){
+  public void sendMessage(Message m, int destAgent, boolean cntFlag){
     /*check to see if message is going from one pseudoagent to another */
-    if (aname.equals("agent"+localAgentID))
+    if (destAgent == localAgentID)
       bufferedMsgs.addLast(m);
+    else if(outbox != null && cntFlag){
+      /* batch it; flushOutbox() sends it at the end of the cycle */
+      if(destAgent >= outbox.length){
+	EnvelopeMessage[] t = new EnvelopeMessage[Math.max(destAgent + 1, 2 * outbox.length)];
+	System.arraycopy(outbox, 0, t, 0, outbox.length);
+	outbox = t;
+      }
+      EnvelopeMessage env = outbox[destAgent];
+      if(env == null){
+	env = new EnvelopeMessage(m.destAgent, localAgentID);
+	outbox[destAgent] = env;
+	if(numOutbox == outboxOrder.length){
+	  int[] t = new int[Math.max(4, 2 * numOutbox)];
+	  System.arraycopy(outboxOrder, 0, t, 0, numOutbox);
+	  outboxOrder = t;
+	}
+	outboxOrder[numOutbox++] = destAgent;
+      }
+      env.add(m);
+    }
     else{
-      mSender.sendMessage(m, aname, cntFlag);
+      mSender.sendMessage(m, destAgent, cntFlag);
     }
     LogMsg_SEND(m, localAgentID);
   }
@@ -0,0 +1,102 @@
+/**********************************************************************
+ * File Name: LongMap.java
+ * Date: Oct 18 2026
+ *
+ * A map from a primitive long key to an object, for the tables the
+ * solver looks up once per message (links, agents).  Open addressing,
+ * so a lookup boxes nothing.  Entries are never removed: callers keep
+ * a mutable holder per key instead.  get() takes no lock and may run
+ * concurrently with putIfAbsent().
+ **********************************************************************/
+
+package adopt.solver;
+
+import java.util.concurrent.atomic.*;
+
+class LongMap {
+
+  /* marks an empty slot.  link keys are (src << 32 | dst) with ids
+     of at least -1, so they are never this */
+  static final long EMPTY = Long.MIN_VALUE;
+
+  static class Table {
+    AtomicLongArray keys;
+    AtomicReferenceArray vals;
+    int mask;
+
+    Table(int cap){
+      keys = new AtomicLongArray(cap);
+      vals = new AtomicReferenceArray(cap);
+      mask = cap - 1;
+      for(int i = 0; i < cap; i++)
+	keys.set(i, EMPTY);
+    }
+  }
+
+  /* replaced, never changed in place, when it grows */
+  volatile Table table = new Table(16);
+  /* guarded by 'this' */
+  int size = 0;
+
+  LongMap(){
+  }
+
+  static int slotOf(long key, int mask){
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  /* the value for 'key', or null */
+  Object get(long key){
+    Table t = table;
+    int i = slotOf(key, t.mask);
+    while(true){
+      long k = t.keys.get(i);
+      if(k == key)
+	return t.vals.get(i);
+      if(k == EMPTY)
+	return null;
+      i = (i + 1) & t.mask;
+    }
+  }
+
+  /* map 'key' to 'val' unless it is mapped already.  returns the
+     value 'key' maps to afterwards. */
+  synchronized Object putIfAbsent(long key, Object val){
+    Object old = get(key);
+    if(old != null)
+      return old;
+    Table t = table;
+    if(2 * (size + 1) > t.mask + 1){
+      t = grow(t);
+      table = t;
+    }
+    insert(t, key, val);
+    size++;
+    return val;
+  }
+
+  /* the value is set before the key, so that get() never finds a
+     key without its value */
+  static void insert(Table t, long key, Object val){
+    int i = slotOf(key, t.mask);
+    while(t.keys.get(i) != EMPTY)
+      i = (i + 1) & t.mask;
+    t.vals.set(i, val);
+    t.keys.set(i, key);
+  }
+
+  static Table grow(Table t){
+    Table n = new Table(2 * (t.mask + 1));
+    for(int i = 0; i <= t.mask; i++){
+      long k = t.keys.get(i);
+      if(k != EMPTY)
+	insert(n, k, t.vals.get(i));
+    }
+    return n;
+  }
+
+  synchronized int size(){
+    return size;
+  }
+}
@@ -0,0 +1,452 @@
+/**********************************************************************
+ * File Name: Mailbox.java
+ * Date: Oct 18 2026
+ *
+ * Input message queue of a single agent.  Any number of agents may
+ * put() concurrently; only the owning agent may poll().
+ *
+ * -DAdoptMailboxCap=<n> bounds the number of queued messages (default
+ * 0: unbounded), and -DAdoptOverflow says what a put() into a full
+ * mailbox does:
+ *
+ *   block  wait up to blockMS for the owner to make room, then queue
+ *          the message anyway (default).  a sender does not wait
+ *          for an owner that is itself waiting, which could be a
+ *          cycle of agents waiting for each other.
+ *   drop   drop queued messages the new one supersedes: an older
+ *          VALUE on the same link, or an older COST on the same link
+ *          for the same context.  envelopes (AdoptBatch) are never
+ *          looked into, so use -DAdoptBatch=false with this policy.
+ *   spill  write the message to a spill file, read back in order
+ *          once the owner has emptied the in-memory queue
+ *
+ * Messages queued over the cap (block timeouts, nothing to drop) are
+ * counted as overflow.  The high-water mark is the longest queue the
+ * owner has seen.
+ *
+ * An agent takes at most 'cap' messages per execution cycle (see
+ * pollLimit()), so a cap smaller than the number of messages an agent
+ * typically gets per cycle slows Adopt down a lot: it then answers
+ * every few messages with a new round of its own.
+ **********************************************************************/
+
+package adopt.solver;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.io.*;
+import java.nio.*;
+
+public class Mailbox {
+
+  /* told about every put(), e.g. to schedule the owning agent */
+  public interface Listener {
+    public void messageArrived(Mailbox mb);
+  }
+
+  /* overflow policies */
+  public static final int BLOCK = 0;
+  public static final int DROP = 1;
+  public static final int SPILL = 2;
+
+  public static int defaultCapacity = Integer.getInteger("AdoptMailboxCap", 0).intValue();
+  public static int defaultPolicy = policyOf(System.getProperty("AdoptOverflow", "block"));
+  /* longest a blocked put() waits for room (ms), 0: never wait */
+  public static long blockMS = 100;
+
+  /* one link in the queue.  'msg' is taken by the consumer, or by a
+     producer dropping it as superseded, with a single CAS. */
+  static class Node {
+    volatile Message msg;
+    volatile Node next;
+
+    Node(Message m){
+      msg = m;
+    }
+  }
+  static final AtomicReferenceFieldUpdater MSG =
+    AtomicReferenceFieldUpdater.newUpdater(Node.class, Message.class, "msg");
+
+  /* name of the agent that owns this mailbox */
+  String owner;
+  /* consumer end: 'head' is a stub node, head.next is the oldest message */
+  Node head;
+  /* producer end: producers swap themselves in here, no locking */
+  AtomicReference tail;
+  /* number of messages put / polled */
+  AtomicLong numPut = new AtomicLong();
+  AtomicLong numPolled = new AtomicLong();
+  /* owning thread, while it is parked in take() */
+  volatile Thread waiter = null;
+  /* if not null, newer VALUE messages supersede queued older ones */
+  ValueCoalescer coalescer = null;
+  volatile Listener listener = null;
+
+  /* most messages queued in memory, 0: no limit */
+  int capacity;
+  int policy;
+  /* longest queue seen by the owner */
+  long highWater = 0;
+  /* messages queued over the capacity */
+  AtomicLong numOverflow = new AtomicLong();
+  /* BLOCK: number of producers waiting for room, and whether the
+     owner is itself waiting for room in some mailbox */
+  volatile int numBlocked = 0;
+  volatile boolean ownerBlocked = false;
+  /* finds the sender's mailbox, if set */
+  MailboxBus bus = null;
+  /* DROP: the newest queued node of each link (an AtomicReference per
+     link), and the number of messages dropped */
+  LongMap newest = null;
+  AtomicLong numDropped = new AtomicLong();
+  /* SPILL: the spill file, guarded by 'spillLock'.  while 'spilled'
+     is not 0 every put() goes to the file, so that messages from one
+     sender stay in order.  'refill' holds messages read back from the
+     file and is only touched by the owner. */
+  Object spillLock = new Object();
+  RandomAccessFile spill = null;
+  long spillRead = 0;
+  long spillWrite = 0;
+  volatile long spilled = 0;
+  long numSpilled = 0;
+  LinkedList refill = new LinkedList();
+
+  public Mailbox(String aname){
+    this(aname, defaultCapacity, defaultPolicy);
+  }
+
+  public Mailbox(String aname, int capacity, int policy){
+    owner = aname;
+    this.capacity = capacity;
+    this.policy = policy;
+    if(ValueCoalescer.enabled)
+      coalescer = new ValueCoalescer();
+    if(capacity > 0 && policy == DROP)
+      newest = new LongMap();
+    head = new Node(null);
+    tail = new AtomicReference(head);
+  }
+
+  static int policyOf(String name){
+    if(name.equals("drop"))
+      return DROP;
+    if(name.equals("spill"))
+      return SPILL;
+    return BLOCK;
+  }
+
+  public static String nameOf(int policy){
+    switch(policy){
+    case DROP:
+      return "drop";
+    case SPILL:
+      return "spill";
+    }
+    return "block";
+  }
+
+  /* most messages an agent should take from its mailbox per cycle,
+     so that the rest of its backlog stays where the cap applies */
+  public static int pollLimit(){
+    return defaultCapacity > 0 ? defaultCapacity : Integer.MAX_VALUE;
+  }
+
+  /* enqueue 'm'. lock-free when the mailbox is unbounded or has room:
+     one atomic swap plus one volatile write. */
+  public void put(Message m){
+    put(m, true);
+  }
+
+  /* as put(), but never waits for room: under BLOCK a full mailbox
+     takes 'm' over its capacity.  for threads that must not stall,
+     such as a bus's network I/O thread. */
+  public void offer(Message m){
+    put(m, false);
+  }
+
+  void put(Message m, boolean mayWait){
+    if(capacity > 0 && (spilled != 0 || size() >= capacity)){
+      if(!makeRoom(m, mayWait)){
+	wakeOwner();
+	return;
+      }
+    }
+    if(coalescer != null)
+      coalescer.offered(m);
+    Node n = new Node(m);
+    if(newest != null && (m.kind == Message.VALUE || m.kind == Message.COST))
+      newestOf(m).set(n);
+    Node prev = (Node) tail.getAndSet(n);
+    prev.next = n;
+    numPut.incrementAndGet();
+    wakeOwner();
+  }
+
+  void wakeOwner(){
+    Thread w = waiter;
+    if(w != null)
+      LockSupport.unpark(w);
+    Listener l = listener;
+    if(l != null)
+      l.messageArrived(this);
+  }
+
+  /* the mailbox is full (or spilling) and 'm' is to be put.  returns
+     false if 'm' has been taken care of, true if it should still be
+     queued.  BLOCK only waits for room if 'mayWait'. */
+  boolean makeRoom(Message m, boolean mayWait){
+    switch(policy){
+    case SPILL:
+      synchronized(spillLock){
+	if(spilled != 0 || size() >= capacity){
+	  spill(m);
+	  return false;
+	}
+      }
+      return true;
+    case DROP:
+      if(!dropSuperseded(m))
+	numOverflow.incrementAndGet();
+      return true;
+    default:
+      if(!mayWait || !awaitRoom(m))
+	numOverflow.incrementAndGet();
+      return true;
+    }
+  }
+
+  /* BLOCK: wait for room in this mailbox.  a ManagedBlocker, so that
+     a pool running agents as actors can add a thread meanwhile. */
+  class RoomWait implements ForkJoinPool.ManagedBlocker {
+    long deadline = System.currentTimeMillis() + blockMS;
+
+    public boolean isReleasable(){
+      return size() < capacity || System.currentTimeMillis() >= deadline;
+    }
+
+    public boolean block() throws InterruptedException {
+      synchronized(Mailbox.this){
+	numBlocked++;
+	try{
+	  while(!isReleasable())
+	    Mailbox.this.wait(Math.max(1, deadline - System.currentTimeMillis()));
+	}finally{
+	  numBlocked--;
+	}
+      }
+      return true;
+    }
+  }
+
+  /* BLOCK: wait until there is room or blockMS have passed; true if
+     there is room */
+  boolean awaitRoom(Message m){
+    if(blockMS <= 0 || ownerBlocked)
+      return false;
+    Mailbox from = bus == null ? null : bus.mailboxOf(m.sourceAgent);
+    if(from != null)
+      from.ownerBlocked = true;
+    try{
+      ForkJoinPool.managedBlock(new RoomWait());
+    }catch(InterruptedException e){
+    }finally{
+      if(from != null)
+	from.ownerBlocked = false;
+    }
+    return size() < capacity;
+  }
+
+  /* DROP: 'm' supersedes the newest queued message on its link if
+     that is a VALUE, or a COST for the same context.  returns true if
+     a message was dropped. */
+  boolean dropSuperseded(Message m){
+    if(m.kind != Message.VALUE && m.kind != Message.COST)
+      return false;
+    Node old = (Node) newestOf(m).get();
+    if(old == null)
+      return false;
+    Message om = old.msg;
+    if(om == null || om.kind != m.kind)
+      return false;
+    if(m.kind == Message.COST && !sameContext((CostMessage) om, (CostMessage) m))
+      return false;
+    if(!MSG.compareAndSet(old, om, null))
+      return false;
+    numDropped.incrementAndGet();
+    return true;
+  }
+
+  static boolean sameContext(CostMessage a, CostMessage b){
+    return Arrays.equals(a.ctxVars, b.ctxVars) && Arrays.equals(a.ctxVals, b.ctxVals);
+  }
+
+  static long linkOf(Message m){
+    return ((long) m.sourceVar << 32) | (m.destVar & 0xffffffffL);
+  }
+
+  /* DROP: the holder of the newest queued node on the link of 'm' */
+  AtomicReference newestOf(Message m){
+    long link = linkOf(m);
+    AtomicReference r = (AtomicReference) newest.get(link);
+    if(r == null)
+      r = (AtomicReference) newest.putIfAbsent(link, new AtomicReference());
+    return r;
+  }
+
+  /* SPILL: append 'm' to the spill file.  holds spillLock. */
+  void spill(Message m){
+    try{
+      if(spill == null){
+	File f = File.createTempFile("adopt-spill-" + owner + "-", ".bin");
+	f.deleteOnExit();
+	spill = new RandomAccessFile(f, "rw");
+      }
+      ByteBuffer b = ByteBuffer.allocate(4 + MessageCodec.sizeOf(m));
+      b.putInt(b.capacity() - 4);
+      MessageCodec.put(b, m);
+      spill.seek(spillWrite);
+      spill.write(b.array());
+      spillWrite += b.capacity();
+      spilled++;
+      numSpilled++;
+    }catch(IOException e){
+      throw new RuntimeException("Mailbox " + owner + ": cannot spill: " + e);
+    }
+  }
+
+  /* SPILL: the in-memory queue is empty; read up to 'capacity'
+     messages back from the spill file into 'refill' */
+  void unspill(){
+    synchronized(spillLock){
+      try{
+	int n = 0;
+	while(spilled > 0 && n < capacity){
+	  spill.seek(spillRead);
+	  byte[] b = new byte[spill.readInt()];
+	  spill.readFully(b);
+	  spillRead += 4 + b.length;
+	  refill.addLast(MessageCodec.get(ByteBuffer.wrap(b)));
+	  spilled--;
+	  n++;
+	}
+	numPut.addAndGet(n);
+	if(spilled == 0){
+	  spillRead = spillWrite = 0;
+	  spill.setLength(0);
+	}
+      }catch(IOException e){
+	throw new RuntimeException("Mailbox " + owner + ": cannot read spill: " + e);
+      }
+    }
+  }
+
+  /* dequeue the oldest message, or return null if there is none.
+     superseded messages are skipped.  must only be called by the
+     owning agent. */
+  public Message poll(){
+    while(true){
+      long s = numPut.get() - numPolled.get();
+      if(s > highWater)
+	highWater = s;
+      Message m;
+      if(refill.size() > 0){
+	m = (Message) refill.removeFirst();
+      }
+      else{
+	Node next = head.next;
+	if(next == null){
+	  if(spilled == 0)
+	    return null;
+	  unspill();
+	  continue;
+	}
+	m = (Message) MSG.getAndSet(next, null);
+	head = next;
+	if(newest != null && m != null){
+	  AtomicReference r = (AtomicReference) newest.get(linkOf(m));
+	  if(r != null)
+	    r.compareAndSet(next, null);
+	}
+      }
+      numPolled.incrementAndGet();
+      if(numBlocked > 0){
+	synchronized(this){
+	  notifyAll();
+	}
+      }
+      /* null: dropped as superseded */
+      if(m != null && (coalescer == null || !coalescer.isStale(m)))
+	return m;
+    }
+  }
+
+  /* like poll(), but if the mailbox is empty park the owning thread
+     until a message arrives or 'timeout' ms have passed. */
+  public Message take(long timeout){
+    Message m = poll();
+    if(m != null || timeout <= 0)
+      return m;
+    long deadline = System.nanoTime() + timeout*1000000L;
+    /* publish 'waiter' before re-checking, so that a put() racing
+       with us either is seen by poll() or unparks us */
+    waiter = Thread.currentThread();
+    try{
+      while((m = poll()) == null){
+	long left = deadline - System.nanoTime();
+	if(left <= 0)
+	  break;
+	LockSupport.parkNanos(this, left);
+      }
+    }finally{
+      waiter = null;
+    }
+    return m;
+  }
+
+  /* true if no message is ready for the consumer. a put() that is
+     still in progress may not be visible yet. */
+  public boolean isEmpty(){
+    return head.next == null && refill.size() == 0 && spilled == 0;
+  }
+
+  /* number of messages put but not yet polled */
+  public long size(){
+    return numPut.get() - numPolled.get();
+  }
+
+  /* remove all queued messages, return how many there were */
+  public int drain(){
+    int cnt = 0;
+    while(poll() != null)
+      cnt++;
+    return cnt;
+  }
+
+  /* number of messages dropped because a newer one was queued */
+  public long numSuperseded(){
+    long cnt = numDropped.get();
+    if(coalescer != null)
+      cnt += coalescer.numSuperseded();
+    return cnt;
+  }
+
+  public long highWater(){
+    return highWater;
+  }
+
+  public long numOverflow(){
+    return numOverflow.get();
+  }
+
+  public long numSpilled(){
+    synchronized(spillLock){
+      return numSpilled;
+    }
+  }
+
+  public String ownerOf(){
+    return owner;
+  }
+}
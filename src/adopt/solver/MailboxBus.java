@@ -0,0 +1,153 @@
+/**********************************************************************
+ * File Name: MailboxBus.java
+ * Date: Oct 18 2026
+ *
+ * In-process message bus: one Mailbox per agent.  Senders never
+ * block each other or the receiver, so there is no global lock.
+ **********************************************************************/
+
+package adopt.solver;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class MailboxBus implements MessageSender {
+
+  /* input mailbox of each agent, indexed by agentID.  replaced, never
+     changed, when an agent is added. */
+  volatile Mailbox[] byID = new Mailbox[0];
+  /* and keyed by agent name */
+  ConcurrentHashMap mailboxes = new ConcurrentHashMap();
+  /* total number of messages sent in the system */
+  AtomicLong numsent = new AtomicLong();
+  /* total number of messages rcvd in the system */
+  AtomicLong numrcvd = new AtomicLong();
+  /* total number of *counted* messages sent in the system. (messages
+     sent to the MASTER are not counted.)  each message batched in an
+     envelope counts once. */
+  AtomicLong msgCnt = new AtomicLong();
+
+  public MailboxBus(){
+  }
+
+  /* Create an input mailbox for agent 'agentID'.  the Master's is
+     never bounded: agents must always be able to report to it. */
+  public synchronized Mailbox addMsgReceiver(int agentID){
+    String aname = "agent" + agentID;
+    Mailbox mb;
+    if(agentID == Master.masterID)
+      mb = new Mailbox(aname, 0, Mailbox.BLOCK);
+    else
+      mb = new Mailbox(aname);
+    mb.bus = this;
+    mailboxes.put(aname, mb);
+    Mailbox[] t = byID;
+    if(agentID >= t.length){
+      Mailbox[] nt = new Mailbox[Math.max(agentID + 1, 2 * t.length)];
+      System.arraycopy(t, 0, nt, 0, t.length);
+      t = nt;
+    }
+    else
+      t = (Mailbox[]) t.clone();
+    t[agentID] = mb;
+    byID = t;
+    return mb;
+  }
+
+  /* mailbox of agent 'agentID', null if it has none here */
+  public Mailbox mailboxOf(int agentID){
+    Mailbox[] t = byID;
+    if(agentID < 0 || agentID >= t.length)
+      return null;
+    return t[agentID];
+  }
+
+  /* some agent wants to send message 'm' to agent 'destAgent'.
+     'cntFlag': count this message in the final stats? */
+  public void sendMessage(Message m, int destAgent, boolean cntFlag){
+    Mailbox mb = mailboxOf(destAgent);
+    if(mb == null){
+      System.out.println("MailboxBus.sendMessage(): Unknown agent: agent" + destAgent);
+      return;
+    }
+    mb.put(m);
+    numsent.incrementAndGet();
+    if(cntFlag)
+      msgCnt.addAndGet(m.count());
+  }
+
+  /* agent 'agentID' wants a message */
+  public Message getMessage(int agentID){
+    Mailbox mb = mailboxOf(agentID);
+    if(mb == null){
+      System.out.println("MailboxBus.getMessage(): Unknown agent: agent" + agentID);
+      return null;
+    }
+    Message msg = mb.poll();
+    if(msg != null)
+      numrcvd.incrementAndGet();
+    return msg;
+  }
+
+  /* agent 'agentID' wants a message, and is willing to park for up to
+     'timeout' ms until one arrives */
+  public Message waitMessage(int agentID, long timeout){
+    Mailbox mb = mailboxOf(agentID);
+    if(mb == null){
+      System.out.println("MailboxBus.waitMessage(): Unknown agent: agent" + agentID);
+      return null;
+    }
+    Message msg = mb.take(timeout);
+    if(msg != null)
+      numrcvd.incrementAndGet();
+    return msg;
+  }
+
+  /* discard everything still queued for 'agentID', return the count.
+     only call once the owning agent has stopped reading. */
+  public int drain(int agentID){
+    Mailbox mb = mailboxOf(agentID);
+    if(mb == null)
+      return 0;
+    return mb.drain();
+  }
+
+  public long numSent(){
+    return numsent.get();
+  }
+
+  public long numRcvd(){
+    return numrcvd.get();
+  }
+
+  /* total number of messages dropped because a newer VALUE on the
+     same link was queued behind them (see ValueCoalescer) */
+  public long numSuperseded(){
+    long cnt = 0;
+    Iterator it = mailboxes.values().iterator();
+    while(it.hasNext())
+      cnt += ((Mailbox) it.next()).numSuperseded();
+    return cnt;
+  }
+
+  /* the mailboxes, ordered by agent name */
+  public Vector mailboxes(){
+    Vector v = new Vector(mailboxes.values());
+    Collections.sort(v, new Comparator(){
+	public int compare(Object a, Object b){
+	  return ((Mailbox) a).ownerOf().compareTo(((Mailbox) b).ownerOf());
+	}
+      });
+    return v;
+  }
+
+  /* total number of messages the network lost (see NetworkBus) */
+  public long numLost(){
+    return 0;
+  }
+
+  public long msgCount(){
+    return msgCnt.get();
+  }
+}
@@ -21,6 +21,8 @@ public class Master extends Algorithm{
   /* Current values of variables in pbm, where value[i] is the current
      value of pbm.vars.elementAt(i).  */
   Value[] values;
+  /* varPos[id] is the index in pbm.vars of the variable with varID id */
+  int[] varPos;
 
   static int masterID = 0;
 
@@ -30,7 +32,11 @@ public class Master extends Algorithm{
   int totalQuality = -1;
   StringBuffer brokenConstraints = null;
   /* are there any agents left alive? */
-  boolean agentsAlive = true;
+  volatile boolean agentsAlive = true;
+  /* how often (ms) a parked Master samples the current solution */
+  public static long sampleInterval = Long.getLong("AdoptSampleMS", 1000).longValue();
+  /* board version of the last sample */
+  long boardVersion = -1;
 
   public Master(int id, Problem p, MessageSender m)
   {
@@ -40,6 +46,18 @@ public class Master extends Algorithm{
     for(int i=0;i<values.length;i++)
       values[i] = null;
 
+    int maxID = -1;
+    for(int i=0;i<pbm.vars.size();i++){
+      Variable v = (Variable) pbm.vars.elementAt(i);
+      if(v.varID > maxID)
+	maxID = v.varID;
+    }
+    varPos = new int[maxID+1];
+    for(int i=0;i<pbm.vars.size();i++){
+      Variable v = (Variable) pbm.vars.elementAt(i);
+      varPos[v.varID] = i;
+    }
+
     PrintWriter pwtr = null;
     String fname = "Logs/Master.log";
     try{
@@ -74,7 +92,7 @@ public class Master extends Algorithm{
 	   values[j] != null){
 	  if(pbm.connected(v1,v2) &&
 	     pbm.comparePriority(v1,v2)){
-	    int q = pbm.evaluate(v1, values[i], v2, values[j]);
+	    int q = pbm.evaluate(v1, v1.indexOf(values[i]), v2, v2.indexOf(values[j]));
 	    if(q > 0)
 	      brokenConstraints.append("(" + v1.uniqueNameOf() + ", " + v2.uniqueNameOf() + ")");
 	    totalQuality = Problem.sumDeltas(q, totalQuality);
@@ -145,23 +163,32 @@ public class Master extends Algorithm{
     return sb.toString();
   }
   
-  public void handleSTATUS(StringTokenizer stok){
-    String agentname = stok.nextToken();
-    String val = stok.nextToken();
-
+  /* read the current values off the board.  returns false if
+     nothing changed since the last sample. */
+  public boolean sampleBoard(){
+    long ver = board.version();
+    if(ver == boardVersion)
+      return false;
+    boardVersion = ver;
     for(int i=0;i<pbm.vars.size();i++){
       Variable v = (Variable) pbm.vars.elementAt(i);
-      if(agentname.equals(v.uniqueNameOf())){
-	values[i] = v.getValue(val);
-      }
+      int val = board.valueOf(v.varID);
+      values[i] = val < 0 ? null : v.domain()[val];
     }
+    return true;
+  }
+
+  public void handleSTATUS(StatusMessage sm){
+    int i = varPos[sm.sourceVar];
+    Variable v = (Variable) pbm.vars.elementAt(i);
+    values[i] = v.domain()[sm.value];
   }
   
   public void dotest(String uname, String val){
     Variable v1 = (Variable) pbm.getVariableFromUniqueVarName(uname);
     for(int i=0;i<pbm.vars.size();i++){
       Variable v2 = (Variable) pbm.vars.elementAt(i);
-      if(v1.uniqueNameOf().equals(v2.uniqueNameOf())){
+      if(v1.equalVar(v2)){
 	values[i] =  v1.getValue(val);
       }
     }
@@ -169,40 +196,68 @@ public class Master extends Algorithm{
 
   /** Incoming messages from Node **/
   public void handleOneMsg(Message m) {
-    Utility.Dprint("Received Message: " + ((Message)m).rawMessage(), Utility.MSG_LEVEL3);
+    if(Utility.Dprinting(Utility.MSG_LEVEL3))
+      Utility.Dprint("Received Message: " + m.rawMessage(), Utility.MSG_LEVEL3);
     
-    StringTokenizer stok = new StringTokenizer(((Message)m).rawMessage());
-    String firstword = stok.nextToken();
-    if(firstword.equals("STATUS"))
-      handleSTATUS(stok);
+    if(m.kind == Message.STATUS)
+      handleSTATUS((StatusMessage) m);
   }
   
-  public void wakeUp(){
+  /* handle the messages waiting for me, return how many */
+  public int wakeUp(){
     int numIter = 0;
     /* process 100 messages, then go back to sleep*/
     int maxIter = 100;
-    Message m = mSender.getMessage("agent"+Master.masterID);
+    Message m = mSender.getMessage(Master.masterID);
     while(m!=null){
       handleOneMsg(m);
       if(numIter > maxIter)
 	break;
-      m = mSender.getMessage("agent"+Master.masterID);
+      m = mSender.getMessage(Master.masterID);
       numIter++;
     }
-    computeQuality(Utility.MSG_LEVEL3);
+    /* with a board the solution only needs a look when it changed */
+    if(board == null || sampleBoard() || numIter > 0 || !agentsAlive)
+      computeQuality(Utility.MSG_LEVEL3);
     /* I've processed all messages, and there are no more agents alive, 
        so I want to terminate. */
     if(!agentsAlive &&
        m == null ){
       iWantToTerminate = true;
     }
+    return numIter;
+  }
+
+  public void step(){
+    wakeUp();
   }
 
   public void run(){
-    while(true)
-      try { wakeUp();
-      Thread.sleep(1000);
-    } catch ( Exception e ) { }
+    /* stop reading once terminated: the Simulator then drains my
+       mailbox to check for lost messages */
+    while(!iWantToTerminate){
+      int n = wakeUp();
+      synchronized(this){
+	if(iWantToTerminate){
+	  notifyAll();
+	  break;
+	}
+	/* parking: sleep until finish() or the next sample */
+	if(agentsAlive && (idle == null || idle.parks()))
+	  try { wait(sampleInterval); } catch ( InterruptedException e ) { }
+      }
+      if(idle != null && !idle.parks())
+	idle.idle(n);
+    }
+  }
+
+  /* all agents are gone: collect the last reports and terminate.
+     returns once the Master (running in its own thread) is done. */
+  public synchronized void finish(){
+    agentsAlive = false;
+    notifyAll();
+    while(!iWantToTerminate)
+      try { wait(1000); } catch ( InterruptedException e ) { }
   }
 
   public static void main(String [] args){
@@ -6,8 +6,21 @@ package adopt.solver;
 
 public class Message {
 
+  /* message kinds. receivers dispatch on 'kind' */
+  public static final int RAW = 0;
+  public static final int VALUE = 1;
+  public static final int COST = 2;
+  public static final int TERMINATE = 3;
+  public static final int TOKEN = 4;
+  public static final int STATUS = 5;
+  public static final int ENVELOPE = 6;
+
+  public int kind = RAW;
   public int destAgent = -1;
   public int sourceAgent = -1;
+  /* varID of the receiving and sending variable, if any */
+  public int destVar = -1;
+  public int sourceVar = -1;
   public String message = null;
 
   public Message (int destAgent, int sourceAgent, String msg) {
@@ -16,6 +29,29 @@ public class Message {
     this.message = msg;
   }
 
+  public Message (int kind, int destAgent, int sourceAgent, 
+		  int destVar, int sourceVar) {
+    this.kind = kind;
+    this.destAgent = destAgent;
+    this.sourceAgent = sourceAgent;
+    this.destVar = destVar;
+    this.sourceVar = sourceVar;
+  }
+
+  /* message as text, for debug output. typed messages build it on
+     demand; nothing parses it. */
   public String rawMessage() { return message; }
 
+  /* number of protocol messages this message stands for (an
+     envelope carries several) */
+  public int count() { return 1; }
+
+  /* " <var> <val> <var> <val> ..." */
+  public static String contextString(int[] vars, int[] vals) {
+    StringBuffer sb = new StringBuffer();
+    for(int i=0;i<vars.length;i++)
+      sb.append(" var").append(vars[i]).append(" ").append(vals[i]);
+    return sb.toString();
+  }
+
 }
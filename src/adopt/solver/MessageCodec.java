@@ -0,0 +1,227 @@
+/**********************************************************************
+ * File Name: MessageCodec.java
+ * Date: Oct 18 2026
+ *
+ * Binary wire format for messages sent between processes.
+ *
+ * Every frame is length-prefixed:
+ *
+ *   <int len> <int destAgent> <byte type> <body>
+ *
+ * where 'len' counts the bytes after the length field.  'type' is a
+ * Message kind (the body is then the message) or one of the control
+ * types below (the body is then <int n> followed by n longs).
+ * 'destAgent' is -1 for control frames.
+ **********************************************************************/
+
+package adopt.solver;
+
+import java.nio.*;
+import java.io.*;
+
+public class MessageCodec {
+
+  /* control frame types (never used as a Message kind) */
+  /* worker -> coordinator: <worker index> <agentID> <agentID> ... */
+  public static final int HELLO = 100;
+  /* coordinator -> worker: start running the agents */
+  public static final int START = 101;
+  /* worker -> coordinator: all my agents terminated at <end time> */
+  public static final int DONE = 102;
+  /* coordinator -> worker: everybody is done, report and exit */
+  public static final int SHUTDOWN = 103;
+  /* worker -> coordinator: <sent> <rcvd> <superseded> <counted> <undelivered> */
+  public static final int STATS = 104;
+
+  /* bytes in front of the type byte: length and destAgent */
+  public static final int HEADER = 8;
+
+  /* number of bytes 'm' takes up, type byte included */
+  public static int sizeOf(Message m){
+    int n = 1 + 16;
+    switch(m.kind){
+    case Message.VALUE:
+      return n + 8;
+    case Message.COST:
+      return n + 8 + sizeOf(((CostMessage) m).ctxVars);
+    case Message.TERMINATE:
+      return n + 4 + sizeOf(((TerminateMessage) m).ctxVars);
+    case Message.TOKEN:
+      return n + 4 + sizeOf(((TokenMessage) m).ctxVars);
+    case Message.STATUS:
+      return n + 4;
+    case Message.ENVELOPE:
+      EnvelopeMessage env = (EnvelopeMessage) m;
+      n += 4;
+      for(int i=0;i<env.size();i++)
+	n += sizeOf(env.elementAt(i));
+      return n;
+    default:
+      return n + 4 + utf8(m.message).length;
+    }
+  }
+
+  /* a context: <int k> then k (varID, value index) pairs */
+  static int sizeOf(int[] ctxVars){
+    return 4 + 8*ctxVars.length;
+  }
+
+  /* write 'm' (type byte first) at the position of 'b' */
+  public static void put(ByteBuffer b, Message m){
+    b.put((byte) m.kind);
+    b.putInt(m.destAgent);
+    b.putInt(m.sourceAgent);
+    b.putInt(m.destVar);
+    b.putInt(m.sourceVar);
+    switch(m.kind){
+    case Message.VALUE:
+      ValueMessage vm = (ValueMessage) m;
+      b.putInt(vm.threshold);
+      b.putInt(vm.value);
+      break;
+    case Message.COST:
+      CostMessage cm = (CostMessage) m;
+      b.putInt(cm.lb);
+      b.putInt(cm.ub);
+      putContext(b, cm.ctxVars, cm.ctxVals);
+      break;
+    case Message.TERMINATE:
+      TerminateMessage tm = (TerminateMessage) m;
+      b.putInt(tm.cost);
+      putContext(b, tm.ctxVars, tm.ctxVals);
+      break;
+    case Message.TOKEN:
+      TokenMessage km = (TokenMessage) m;
+      b.putInt(km.cost);
+      putContext(b, km.ctxVars, km.ctxVals);
+      break;
+    case Message.STATUS:
+      b.putInt(((StatusMessage) m).value);
+      break;
+    case Message.ENVELOPE:
+      EnvelopeMessage env = (EnvelopeMessage) m;
+      b.putInt(env.size());
+      for(int i=0;i<env.size();i++)
+	put(b, env.elementAt(i));
+      break;
+    default:
+      byte[] s = utf8(m.message);
+      b.putInt(s.length);
+      b.put(s);
+    }
+  }
+
+  static void putContext(ByteBuffer b, int[] vars, int[] vals){
+    b.putInt(vars.length);
+    for(int i=0;i<vars.length;i++){
+      b.putInt(vars[i]);
+      b.putInt(vals[i]);
+    }
+  }
+
+  /* read one message (type byte first) from the position of 'b' */
+  public static Message get(ByteBuffer b){
+    int kind = b.get();
+    int destAgent = b.getInt();
+    int sourceAgent = b.getInt();
+    int destVar = b.getInt();
+    int sourceVar = b.getInt();
+    switch(kind){
+    case Message.VALUE:
+      int threshold = b.getInt();
+      return new ValueMessage(destAgent, sourceAgent, destVar, threshold,
+			      sourceVar, b.getInt());
+    case Message.COST:
+      int lb = b.getInt();
+      int ub = b.getInt();
+      int[][] cctx = getContext(b);
+      return new CostMessage(destAgent, sourceAgent, destVar, sourceVar,
+			     lb, ub, cctx[0], cctx[1]);
+    case Message.TERMINATE:
+      int tcost = b.getInt();
+      int[][] tctx = getContext(b);
+      return new TerminateMessage(destAgent, sourceAgent, destVar, sourceVar,
+				  tcost, tctx[0], tctx[1]);
+    case Message.TOKEN:
+      int kcost = b.getInt();
+      int[][] kctx = getContext(b);
+      return new TokenMessage(destAgent, sourceAgent, destVar, sourceVar,
+			      kcost, kctx[0], kctx[1]);
+    case Message.STATUS:
+      return new StatusMessage(destAgent, sourceAgent, sourceVar, b.getInt());
+    case Message.ENVELOPE:
+      EnvelopeMessage env = new EnvelopeMessage(destAgent, sourceAgent);
+      int n = b.getInt();
+      for(int i=0;i<n;i++)
+	env.add(get(b));
+      return env;
+    default:
+      byte[] s = new byte[b.getInt()];
+      b.get(s);
+      Message m = new Message(destAgent, sourceAgent, fromUtf8(s));
+      m.kind = kind;
+      m.destVar = destVar;
+      m.sourceVar = sourceVar;
+      return m;
+    }
+  }
+
+  static int[][] getContext(ByteBuffer b){
+    int k = b.getInt();
+    int[][] ctx = new int[2][k];
+    for(int i=0;i<k;i++){
+      ctx[0][i] = b.getInt();
+      ctx[1][i] = b.getInt();
+    }
+    return ctx;
+  }
+
+  /* a complete frame carrying 'm' to agent 'destAgent', ready to be
+     written */
+  public static ByteBuffer frame(int destAgent, Message m){
+    int size = sizeOf(m);
+    ByteBuffer b = ByteBuffer.allocate(HEADER + size);
+    b.putInt(4 + size);
+    b.putInt(destAgent);
+    put(b, m);
+    b.flip();
+    return b;
+  }
+
+  /* a complete control frame, ready to be written */
+  public static ByteBuffer control(int type, long[] vals){
+    ByteBuffer b = ByteBuffer.allocate(HEADER + 1 + 4 + 8*vals.length);
+    b.putInt(4 + 1 + 4 + 8*vals.length);
+    b.putInt(-1);
+    b.put((byte) type);
+    b.putInt(vals.length);
+    for(int i=0;i<vals.length;i++)
+      b.putLong(vals[i]);
+    b.flip();
+    return b;
+  }
+
+  /* the body of a control frame; 'b' is positioned after the type */
+  public static long[] controlValues(ByteBuffer b){
+    long[] vals = new long[b.getInt()];
+    for(int i=0;i<vals.length;i++)
+      vals[i] = b.getLong();
+    return vals;
+  }
+
+  static byte[] utf8(String s){
+    try{
+      return (s == null ? "" : s).getBytes("UTF-8");
+    }catch(UnsupportedEncodingException e){
+      return new byte[0];
+    }
+  }
+
+  static String fromUtf8(byte[] s){
+    try{
+      return new String(s, "UTF-8");
+    }catch(UnsupportedEncodingException e){
+      return "";
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/**********************************************************************
+ * File Name: MessageScheduler.java
+ * Date: Oct 18 2026
+ *
+ * Input message queue of one pseudo-agent.  With -DAdoptPriority set
+ * it hands out messages by priority class, TERMINATE before VALUE
+ * before COST, each class in arrival order:
+ *
+ *   fifo   arrival order only (default)
+ *   class  priority classes
+ *   drop   priority classes, and a VALUE drops the queued COSTs whose
+ *          context holds another value for its sender
+ *
+ * A pseudo-agent handles its whole queue before it backtracks, so the
+ * order only decides which context each message is checked against.
+ * Handling the VALUEs first means a COST is checked against the
+ * newest values; under 'drop' the ones that would fail that check
+ * are not handled at all.
+ **********************************************************************/
+
+package adopt.solver;
+
+import java.util.*;
+
+public class MessageScheduler {
+
+  public static final int FIFO = 0;
+  public static final int CLASSES = 1;
+  public static final int DROP = 2;
+
+  public static int defaultMode = modeOf(System.getProperty("AdoptPriority"));
+
+  /* the priority classes, highest first */
+  static final int TERMINATE_CLASS = 0;
+  static final int VALUE_CLASS = 1;
+  static final int COST_CLASS = 2;
+
+  int mode;
+  LinkedList[] classes;
+  int size = 0;
+  /* number of COSTs dropped as stale */
+  long numStale = 0;
+
+  public MessageScheduler(int mode){
+    this.mode = mode;
+    classes = new LinkedList[mode == FIFO ? 1 : 3];
+    for(int i=0;i<classes.length;i++)
+      classes[i] = new LinkedList();
+  }
+
+  /* "fifo", "class" or "drop"; anything else is fifo */
+  public static int modeOf(String name){
+    if("class".equals(name))
+      return CLASSES;
+    if("drop".equals(name))
+      return DROP;
+    return FIFO;
+  }
+
+  public static String nameOf(int mode){
+    switch(mode){
+    case CLASSES: return "class";
+    case DROP: return "drop";
+    }
+    return "fifo";
+  }
+
+  int classOf(Message m){
+    if(mode == FIFO)
+      return 0;
+    if(m.kind == Message.TERMINATE)
+      return TERMINATE_CLASS;
+    if(m.kind == Message.VALUE)
+      return VALUE_CLASS;
+    return COST_CLASS;
+  }
+
+  public void add(Message m){
+    if(mode == DROP && m.kind == Message.VALUE)
+      dropStaleCosts((ValueMessage) m);
+    classes[classOf(m)].addLast(m);
+    size++;
+  }
+
+  /* the VALUE 'vm' is queued: drop every queued COST whose context
+     gives its sender another value.  'vm' is handled first, and the
+     COST would then no longer fit the context. */
+  void dropStaleCosts(ValueMessage vm){
+    LinkedList q = classes[COST_CLASS];
+    if(q.size() == 0)
+      return;
+    Iterator it = q.iterator();
+    while(it.hasNext()){
+      Message m = (Message) it.next();
+      if(m.kind != Message.COST)
+	continue;
+      CostMessage cm = (CostMessage) m;
+      for(int i=0;i<cm.ctxVars.length;i++){
+	if(cm.ctxVars[i] != vm.sourceVar)
+	  continue;
+	if(cm.ctxVals[i] != vm.value){
+	  it.remove();
+	  size--;
+	  numStale++;
+	}
+	break;
+      }
+    }
+  }
+
+  /* remove and return the next message, null if there is none */
+  public Message poll(){
+    for(int i=0;i<classes.length;i++){
+      LinkedList q = classes[i];
+      if(q.size() > 0){
+	size--;
+	return (Message) q.removeFirst();
+      }
+    }
+    return null;
+  }
+
+  public int size(){
+    return size;
+  }
+
+  public long numStale(){
+    return numStale;
+  }
+}
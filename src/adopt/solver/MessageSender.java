@@ -6,6 +6,9 @@ package adopt.solver;
 
 public interface MessageSender {
 
-  public void sendMessage (Message m, String aname, boolean cntFlag);
-  public Message getMessage (String aname);
+  /* agents are addressed by agentID */
+  public void sendMessage (Message m, int destAgent, boolean cntFlag);
+  public Message getMessage (int agentID);
+  /* like getMessage(), but wait up to 'timeout' ms for a message */
+  public Message waitMessage (int agentID, long timeout);
 }
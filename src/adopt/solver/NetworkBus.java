@@ -0,0 +1,183 @@
+/**********************************************************************
+ * File Name: NetworkBus.java
+ * Date: Oct 18 2026
+ *
+ * MailboxBus that delivers messages through a NetworkModel: a sent
+ * message waits in a time-ordered queue until its delivery time, then
+ * goes to the receiver's mailbox (or is dropped, if the model loses
+ * it).
+ *
+ * The clock is the virtual clock when EventSimulator runs one
+ * (Utility.virtualTime), and the wall clock otherwise; with the wall
+ * clock a delivery thread (startDelivery()) moves due messages.
+ **********************************************************************/
+
+package adopt.solver;
+
+import adopt.common.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+public class NetworkBus extends MailboxBus {
+
+  /* a message in flight */
+  static class Delivery implements Comparable {
+    long sent;
+    long due;
+    long seq;
+    int dest;
+    Message msg;
+
+    Delivery(long sent, long due, long seq, int dest, Message msg){
+      this.sent = sent;
+      this.due = due;
+      this.seq = seq;
+      this.dest = dest;
+      this.msg = msg;
+    }
+
+    public int compareTo(Object o){
+      Delivery d = (Delivery) o;
+      if(due != d.due)
+	return due < d.due ? -1 : 1;
+      return seq < d.seq ? -1 : (seq == d.seq ? 0 : 1);
+    }
+  }
+
+  NetworkModel model;
+  /* messages in flight, earliest first.  guarded by 'this'. */
+  PriorityQueue inFlight = new PriorityQueue();
+  long seq = 0;
+  long wallStart = System.nanoTime();
+  AtomicLong numLost = new AtomicLong();
+  /* sum of the modelled delays (us) of the delivered messages */
+  AtomicLong totalDelay = new AtomicLong();
+  AtomicLong numDelivered = new AtomicLong();
+  Thread deliverer = null;
+
+  public NetworkBus(NetworkModel m){
+    model = m;
+  }
+
+  /* current time (us) */
+  public long nowUS(){
+    if(Utility.virtualTime >= 0)
+      return Utility.virtualTime * 1000;
+    return (System.nanoTime() - wallStart) / 1000;
+  }
+
+  public void sendMessage(Message m, int destAgent, boolean cntFlag){
+    Mailbox mb = mailboxOf(destAgent);
+    /* the Master is not on the network */
+    if(mb == null || destAgent == Master.masterID){
+      super.sendMessage(m, destAgent, cntFlag);
+      return;
+    }
+    numsent.incrementAndGet();
+    if(cntFlag)
+      msgCnt.addAndGet(m.count());
+    synchronized(this){
+      long now = nowUS();
+      long due = model.deliveryTime(m.sourceAgent, destAgent, 
+				    MessageCodec.sizeOf(m), now);
+      if(due < 0){
+	numLost.incrementAndGet();
+	return;
+      }
+      Delivery d = new Delivery(now, due, seq++, destAgent, m);
+      inFlight.add(d);
+      /* wake the delivery thread if this is the new earliest */
+      if(inFlight.peek() == d)
+	notifyAll();
+    }
+  }
+
+  /* move every message due by now to its mailbox; returns how many */
+  public int deliverDue(){
+    int cnt = 0;
+    while(true){
+      Delivery d;
+      synchronized(this){
+	d = (Delivery) inFlight.peek();
+	if(d == null || d.due > nowUS())
+	  return cnt;
+	inFlight.poll();
+      }
+      deliver(d);
+      cnt++;
+    }
+  }
+
+  void deliver(Delivery d){
+    totalDelay.addAndGet(d.due - d.sent);
+    Mailbox mb = mailboxOf(d.dest);
+    mb.put(d.msg);
+    numDelivered.incrementAndGet();
+  }
+
+  /* delivery time (us) of the next message in flight, -1 if none */
+  public synchronized long nextDue(){
+    Delivery d = (Delivery) inFlight.peek();
+    return d == null ? -1 : d.due;
+  }
+
+  public synchronized int numInFlight(){
+    return inFlight.size();
+  }
+
+  /* wall clock mode: deliver messages from a thread of our own */
+  public void startDelivery(){
+    deliverer = new Thread(){
+	public void run(){
+	  deliveryLoop();
+	}
+      };
+    deliverer.setName("NetworkBus");
+    deliverer.setDaemon(true);
+    deliverer.start();
+  }
+
+  void deliveryLoop(){
+    while(true){
+      deliverDue();
+      synchronized(this){
+	long next = nextDue();
+	long wait = next < 0 ? 1000000 : next - nowUS();
+	if(wait > 0){
+	  try{
+	    wait(wait / 1000, (int) (wait % 1000) * 1000);
+	  }catch(InterruptedException e){
+	    return;
+	  }
+	}
+      }
+    }
+  }
+
+  /* messages still in flight to 'agentID' count as undelivered too */
+  public int drain(int agentID){
+    int cnt = super.drain(agentID);
+    synchronized(this){
+      Iterator it = inFlight.iterator();
+      while(it.hasNext()){
+	Delivery d = (Delivery) it.next();
+	if(d.dest == agentID){
+	  it.remove();
+	  cnt++;
+	}
+      }
+    }
+    return cnt;
+  }
+
+  public long numLost(){
+    return numLost.get();
+  }
+
+  /* mean modelled delay (ms) of the delivered messages */
+  public double meanDelayMS(){
+    long n = numDelivered.get();
+    return n == 0 ? 0 : totalDelay.get() / 1000.0 / n;
+  }
+}
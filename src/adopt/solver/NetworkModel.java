@@ -0,0 +1,163 @@
+/**********************************************************************
+ * File Name: NetworkModel.java
+ * Date: Oct 18 2026
+ *
+ * Simulated network between agents: per-link latency, message loss
+ * and bandwidth.  Configured with -DAdoptNetwork=<spec>, a comma
+ * separated list of
+ *
+ *   latency=<dist>           default latency of every link
+ *   link.<src>.<dst>=<dist>  latency of the link from agent <src>
+ *                            to agent <dst>
+ *   loss=<p>                 probability that a message is lost
+ *   bandwidth=<bytes/sec>    capacity of every link (0: unlimited)
+ *   fifo=<true|false>        keep each link in order (default true)
+ *   seed=<n>                 random seed (default 0)
+ *
+ * where <dist> is fixed:<ms>, uniform:<lo ms>:<hi ms> or exp:<mean ms>.
+ * e.g. -DAdoptNetwork=latency=uniform:5:20,loss=0.001,seed=3
+ *
+ * Every link draws from its own Random, seeded from 'seed' and the
+ * link, so a link's delays only depend on the messages sent on it.
+ * Messages to the Master are never delayed or lost.
+ **********************************************************************/
+
+package adopt.solver;
+
+import java.util.*;
+
+public class NetworkModel {
+
+  public static String spec = System.getProperty("AdoptNetwork");
+
+  /* a latency distribution, in microseconds */
+  static class Dist {
+    static final int FIXED = 0;
+    static final int UNIFORM = 1;
+    static final int EXP = 2;
+    int type;
+    double a;
+    double b;
+
+    /* "fixed:10", "uniform:5:20", "exp:10" (ms) */
+    Dist(String s){
+      String[] f = s.split(":");
+      if(f[0].equals("fixed") && f.length == 2){
+	type = FIXED;
+	a = Double.parseDouble(f[1]) * 1000;
+      }
+      else if(f[0].equals("uniform") && f.length == 3){
+	type = UNIFORM;
+	a = Double.parseDouble(f[1]) * 1000;
+	b = Double.parseDouble(f[2]) * 1000;
+      }
+      else if(f[0].equals("exp") && f.length == 2){
+	type = EXP;
+	a = Double.parseDouble(f[1]) * 1000;
+      }
+      else
+	throw new IllegalArgumentException("NetworkModel: bad latency '" + s + "'");
+    }
+
+    long sample(Random r){
+      switch(type){
+      case UNIFORM:
+	return (long) (a + (b - a) * r.nextDouble());
+      case EXP:
+	return (long) (-a * Math.log(1.0 - r.nextDouble()));
+      }
+      return (long) a;
+    }
+  }
+
+  /* state of one directed link */
+  static class Link {
+    Random rng;
+    Dist latency;
+    /* time (us) the link finishes sending what it has been given */
+    long freeAt = 0;
+    /* delivery time (us) of the last message on the link */
+    long lastDue = 0;
+  }
+
+  Dist latency = new Dist("fixed:0");
+  /* per-link latency overrides, keyed by "<src>.<dst>" */
+  Hashtable linkLatency = new Hashtable();
+  double loss = 0;
+  double bandwidth = 0;
+  boolean fifo = true;
+  long seed = 0;
+  /* links in use, keyed by (src << 32 | dst) */
+  LongMap links = new LongMap();
+
+  public NetworkModel(String spec){
+    StringTokenizer st = new StringTokenizer(spec, ",");
+    while(st.hasMoreTokens()){
+      String kv = st.nextToken().trim();
+      int eq = kv.indexOf('=');
+      if(eq < 0)
+	throw new IllegalArgumentException("NetworkModel: bad setting '" + kv + "'");
+      String key = kv.substring(0, eq);
+      String val = kv.substring(eq + 1);
+      if(key.equals("latency"))
+	latency = new Dist(val);
+      else if(key.startsWith("link."))
+	linkLatency.put(key.substring(5), new Dist(val));
+      else if(key.equals("loss"))
+	loss = Double.parseDouble(val);
+      else if(key.equals("bandwidth"))
+	bandwidth = Double.parseDouble(val);
+      else if(key.equals("fifo"))
+	fifo = !val.equals("false");
+      else if(key.equals("seed"))
+	seed = Long.parseLong(val);
+      else
+	throw new IllegalArgumentException("NetworkModel: unknown setting '" + key + "'");
+    }
+  }
+
+  /* the model given by -DAdoptNetwork, or null if there is none */
+  public static NetworkModel configured(){
+    if(spec == null || spec.length() == 0)
+      return null;
+    return new NetworkModel(spec);
+  }
+
+  Link linkOf(int src, int dst){
+    long key = ((long) src << 32) | (dst & 0xffffffffL);
+    Link l = (Link) links.get(key);
+    if(l == null){
+      l = new Link();
+      l.rng = new Random(seed * 1000003L + key);
+      l.latency = (Dist) linkLatency.get(src + "." + dst);
+      if(l.latency == null)
+	l.latency = latency;
+      links.putIfAbsent(key, l);
+    }
+    return l;
+  }
+
+  /* a message of 'bytes' bytes is sent from agent 'src' to 'dst' at
+     time 'now' (us).  returns its delivery time (us), or -1 if it is
+     lost.  not thread safe. */
+  public long deliveryTime(int src, int dst, int bytes, long now){
+    Link l = linkOf(src, dst);
+    if(loss > 0 && l.rng.nextDouble() < loss)
+      return -1;
+    long sent = now;
+    if(bandwidth > 0){
+      long start = Math.max(now, l.freeAt);
+      l.freeAt = start + (long) (bytes * 1000000.0 / bandwidth);
+      sent = l.freeAt;
+    }
+    long due = sent + l.latency.sample(l.rng);
+    if(fifo && due < l.lastDue)
+      due = l.lastDue;
+    l.lastDue = due;
+    return due;
+  }
+
+  public String toString(){
+    return spec;
+  }
+}
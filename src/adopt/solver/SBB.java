@@ -124,37 +124,20 @@ public class SBB extends Adopt{
 
   /* Extend the given solution with the given value for x_i */
   public Context extendSolution(Context solution, Value val){
-    Context result = new Context(solution);
-    result.addVarToContext(x_i, val);
-    return result;
+    return solution.with(x_i, val);
   }
 
   public void SEND_TERMINATE(Context vw, int cost, Variable vvar){
-    String aname = "agent" + vvar.agentIDof();  
-    String header = this.TERM;
-      
-    /* Msg format: "TERMINATE  <destvar> <sourcevariable> <Context>" */
-    String msg = header 
-      + " " + vvar.uniqueNameOf() 
-      + " " + x_i.uniqueNameOf() 
-      + " " + cost  
-      + " " + vw.toMsg();
-
-    mSender.sendMessage(new Message(vvar.agentID, x_i.agentID, msg), aname, true);    
+    Message msg = new TerminateMessage(vvar.agentID, x_i.agentID, vvar.varID, 
+				       x_i.varID, cost, vw);
+    mSender.sendMessage(msg, vvar.agentIDof(), true);    
   }
 
   public void SEND_TOKEN(Context vw, int cost, Variable vvar){
 
-    String aname = "agent" + vvar.agentIDof();  
-    String header = this.TOKEN;
-    
-    /* Msg format: "TOKEN  <destvariable> <sourcevar> <cost> <Context>" */
-    String msg = header + 
-      " " + vvar.uniqueNameOf() + 
-      " " + x_i.uniqueNameOf() + 
-      " " + cost + 
-      " " + vw.toMsg();
-    mSender.sendMessage(new Message(vvar.agentID, x_i.agentID, msg), aname, true);    
+    Message msg = new TokenMessage(vvar.agentID, x_i.agentID, vvar.varID, 
+				   x_i.varID, cost, vw);
+    mSender.sendMessage(msg, vvar.agentIDof(), true);    
   }
 
   /* return the locally best branch for the given Context */
@@ -209,7 +192,7 @@ public class SBB extends Adopt{
 
   }
 
-  public void whenReceivedTERMINATE(Context vw, int cost, String sourcevar){
+  public void whenReceivedTERMINATE(Context vw, int cost, Variable sourcevar){
 
     logTerminateMsgRcvd(vw, cost, sourcevar);
 
@@ -233,11 +216,9 @@ public class SBB extends Adopt{
     }
   }
 
-  public void whenReceivedTOKEN(Context vw, int cost, String sourcevar){
-
-    Variable vvar = pbm.getVariableFromUniqueVarName(sourcevar);
+  public void whenReceivedTOKEN(Context vw, int cost, Variable vvar){
 
-    logTokenMsgRcvd(vw, cost, sourcevar);
+    logTokenMsgRcvd(vw, cost, vvar);
 
     /* did token come from lower agent? */
     if(pbm.comparePriority(x_i, vvar)){
@@ -350,18 +331,18 @@ public class SBB extends Adopt{
 
   
 
-  public void logTerminateMsgRcvd(Context vw, int cost, String source){
+  public void logTerminateMsgRcvd(Context vw, int cost, Variable source){
     
     nLog.printToLogln(  "   " + Utility.TimeStringMS() 
-			+ "---term from " + source + ": " 
+			+ "---term from " + source.uniqueNameOf() + ": " 
 			+ " " + cost
 			+ " " + vw.toString());
   }
 
-  public void logTokenMsgRcvd(Context vw, int cost, String source){
+  public void logTokenMsgRcvd(Context vw, int cost, Variable source){
     
     nLog.printToLogln(  "   " + Utility.TimeStringMS() 
-			+ "---from " + source + ": " 
+			+ "---from " + source.uniqueNameOf() + ": " 
 			+ " " + cost
 			+ " " + vw.toString());
   }
@@ -0,0 +1,155 @@
+/**********************************************************************
+ * File Name: ShmBus.java
+ * Date: Oct 18 2026
+ *
+ * Multi-process message bus whose agent-to-agent traffic goes
+ * through memory-mapped rings (ShmRing) instead of sockets.  There
+ * is one ring per (sending agent, receiving process) pair, so each
+ * ring has exactly one producer -- the thread of the sending agent
+ * -- and one consumer, the reader thread of the receiving process.
+ * Control frames still use the socket links of SocketBus.
+ *
+ * -DAdoptRingIdle=spin|yield|backoff|park picks how the reader waits
+ * for data and how a sender waits for room (default backoff).
+ * -DAdoptRingSize sets the data area of each ring (default 1MB).
+ * Rings live in /dev/shm if there is one, else in java.io.tmpdir.
+ **********************************************************************/
+
+package adopt.solver;
+
+import adopt.common.*;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+
+public class ShmBus extends SocketBus {
+
+  public static String idleName = System.getProperty("AdoptRingIdle", "backoff");
+  public static int ringSize = Integer.getInteger("AdoptRingSize", 1024*1024).intValue();
+
+  /* process hosting each agent, and this process */
+  int[] nodeOf;
+  int localNode = -1;
+  int numNodes = 0;
+  File dir = null;
+  /* out[agentID][node]: ring from a local agent to process 'node' */
+  ShmRing[][] out = new ShmRing[0][];
+  /* rings into this process */
+  Vector inbound = new Vector();
+  Thread reader = null;
+  volatile boolean reading = false;
+
+  public ShmBus(Node n) throws IOException {
+    super(n);
+  }
+
+  static File ringDir(int port){
+    File shm = new File("/dev/shm");
+    File base = shm.isDirectory() ? shm : new File(System.getProperty("java.io.tmpdir"));
+    return new File(base, "adopt-" + port);
+  }
+
+  static File ringFile(File dir, int agentID, int node){
+    return new File(dir, "agent" + agentID + "-node" + node);
+  }
+
+  /* create the rings from each local agent to every other process */
+  public void prepare(int[] nodeOf, int node, int port) throws IOException {
+    this.nodeOf = nodeOf;
+    localNode = node;
+    for(int i=0;i<nodeOf.length;i++)
+      if(nodeOf[i] + 1 > numNodes)
+	numNodes = nodeOf[i] + 1;
+    dir = ringDir(port);
+    dir.mkdirs();
+    dir.deleteOnExit();
+    out = new ShmRing[nodeOf.length][];
+    for(int id=0;id<nodeOf.length;id++){
+      if(nodeOf[id] != localNode)
+	continue;
+      out[id] = new ShmRing[numNodes];
+      for(int j=0;j<numNodes;j++){
+	if(j == localNode)
+	  continue;
+	File f = ringFile(dir, id, j);
+	out[id][j] = ShmRing.create(f, ringSize);
+	f.deleteOnExit();
+      }
+    }
+  }
+
+  /* map the rings into this process and start reading them */
+  public void ready() throws IOException {
+    for(int id=0;id<nodeOf.length;id++){
+      if(nodeOf[id] < 0 || nodeOf[id] == localNode)
+	continue;
+      File f = ringFile(dir, id, localNode);
+      if(f.exists())
+	inbound.add(ShmRing.open(f));
+    }
+    reading = true;
+    reader = new Thread(){
+	public void run(){
+	  readLoop();
+	}
+      };
+    reader.setName("ShmBus");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  void readLoop(){
+    IdleStrategy idle = IdleStrategy.byName(idleName);
+    while(reading)
+      idle.idle(readAll());
+  }
+
+  /* deliver everything currently in the inbound rings, return the
+     number of frames */
+  int readAll(){
+    int cnt = 0;
+    for(int i=0;i<inbound.size();i++){
+      ShmRing r = (ShmRing) inbound.elementAt(i);
+      ByteBuffer frame;
+      while((frame = r.poll()) != null){
+	received(null, frame);
+	cnt++;
+      }
+    }
+    return cnt;
+  }
+
+  public void quiesce(){
+    reading = false;
+    try{
+      if(reader != null)
+	reader.join();
+    }catch(InterruptedException e){
+    }
+    readAll();
+  }
+
+  /* local agents go through the mailboxes, remote ones through the
+     sending agent's ring to the destination process */
+  public void sendMessage(Message m, int dest, boolean cntFlag){
+    ShmRing r = null;
+    if(nodeOf != null && mailboxOf(dest) == null 
+       && m.sourceAgent >= 0 && m.sourceAgent < out.length && out[m.sourceAgent] != null
+       && dest < nodeOf.length && nodeOf[dest] >= 0)
+      r = out[m.sourceAgent][nodeOf[dest]];
+    if(r == null){
+      super.sendMessage(m, dest, cntFlag);
+      return;
+    }
+    ByteBuffer frame = MessageCodec.frame(dest, m);
+    if(!r.offer(frame)){
+      IdleStrategy idle = IdleStrategy.byName(idleName);
+      while(!r.offer(frame))
+	idle.idle();
+    }
+    numsent.incrementAndGet();
+    if(cntFlag)
+      msgCnt.addAndGet(m.count());
+  }
+}
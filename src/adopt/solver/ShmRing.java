@@ -0,0 +1,152 @@
+/**********************************************************************
+ * File Name: ShmRing.java
+ * Date: Oct 18 2026
+ *
+ * Single-producer / single-consumer ring buffer in a memory-mapped
+ * file, so that two processes on one host can exchange MessageCodec
+ * frames without a system call per message.
+ *
+ * File layout:
+ *
+ *   0    head   (long, written by the consumer)
+ *   64   tail   (long, written by the producer)
+ *   128  capacity of the data area (int, a power of 2)
+ *   192  data
+ *
+ * head and tail are byte positions that only grow; they sit on their
+ * own cache lines.  Records are frames (which start with their own
+ * length), padded to 8 bytes.  A record never wraps around the end of
+ * the data area: the producer writes a -1 length there instead and
+ * starts over at 0.  The producer publishes a record with a release
+ * store to tail; the consumer frees it with a release store to head.
+ **********************************************************************/
+
+package adopt.solver;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.lang.invoke.*;
+
+public class ShmRing {
+
+  static final int HEAD = 0;
+  static final int TAIL = 64;
+  static final int CAPACITY = 128;
+  static final int DATA = 192;
+  /* length of the padding record at the end of the data area */
+  static final int WRAP = -1;
+
+  static final VarHandle LONGS =
+    MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  File file;
+  MappedByteBuffer buf;
+  int capacity;
+  int mask;
+  /* producer's and consumer's own copy of their position */
+  long tail;
+  long head;
+
+  ShmRing(File f, MappedByteBuffer b){
+    file = f;
+    buf = b;
+    capacity = b.getInt(CAPACITY);
+    mask = capacity - 1;
+    head = (long) LONGS.getAcquire(buf, HEAD);
+    tail = (long) LONGS.getAcquire(buf, TAIL);
+  }
+
+  /* create (or truncate) the ring file 'f' with a data area of at least
+     'size' bytes */
+  public static ShmRing create(File f, int size) throws IOException {
+    int cap = 1024;
+    while(cap < size)
+      cap *= 2;
+    RandomAccessFile raf = new RandomAccessFile(f, "rw");
+    try{
+      raf.setLength(0);
+      raf.setLength(DATA + cap);
+      MappedByteBuffer b = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, DATA + cap);
+      b.putInt(CAPACITY, cap);
+      LONGS.setRelease(b, HEAD, 0L);
+      LONGS.setRelease(b, TAIL, 0L);
+      return new ShmRing(f, b);
+    }finally{
+      raf.close();
+    }
+  }
+
+  /* map an existing ring file */
+  public static ShmRing open(File f) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(f, "rw");
+    try{
+      MappedByteBuffer b = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+      return new ShmRing(f, b);
+    }finally{
+      raf.close();
+    }
+  }
+
+  static int align(int n){
+    return (n + 7) & ~7;
+  }
+
+  /* producer: append the frame between position and limit of 'frame'.
+     returns false (and writes nothing) if the ring is too full. */
+  public boolean offer(ByteBuffer frame){
+    int n = align(frame.remaining());
+    if(n > capacity)
+      throw new IllegalArgumentException("ShmRing: frame of " + n + " bytes does not fit in " + capacity);
+    int idx = (int) (tail & mask);
+    int pad = (idx + n > capacity) ? capacity - idx : 0;
+    long h = (long) LONGS.getAcquire(buf, HEAD);
+    if(tail + pad + n - h > capacity)
+      return false;
+    if(pad > 0){
+      buf.putInt(DATA + idx, WRAP);
+      tail += pad;
+      idx = 0;
+    }
+    ByteBuffer dst = buf.duplicate();
+    dst.position(DATA + idx);
+    dst.put(frame.duplicate());
+    tail += n;
+    LONGS.setRelease(buf, TAIL, tail);
+    return true;
+  }
+
+  /* consumer: remove the oldest frame and return a copy of it
+     (positioned at its length field), or null if the ring is empty */
+  public ByteBuffer poll(){
+    while(true){
+      long t = (long) LONGS.getAcquire(buf, TAIL);
+      if(head == t)
+	return null;
+      int idx = (int) (head & mask);
+      int len = buf.getInt(DATA + idx);
+      if(len == WRAP){
+	head += capacity - idx;
+	continue;
+      }
+      ByteBuffer src = buf.duplicate();
+      src.position(DATA + idx);
+      src.limit(DATA + idx + 4 + len);
+      ByteBuffer frame = ByteBuffer.allocate(4 + len);
+      frame.put(src);
+      frame.flip();
+      head += align(4 + len);
+      LONGS.setRelease(buf, HEAD, head);
+      return frame;
+    }
+  }
+
+  /* bytes written but not yet consumed */
+  public long size(){
+    return (long) LONGS.getAcquire(buf, TAIL) - (long) LONGS.getAcquire(buf, HEAD);
+  }
+
+  public File fileOf(){
+    return file;
+  }
+}
@@ -27,26 +27,22 @@ public class Simulator implements MessageSender {
 	String inputFileName;
 	/* name of algorithm */
 	String algorithmName;
-	/*
-	 * name of a special "master" agent. used to collect problem solution.
-	 */
-	String masterName;
 	/* Data logger */
 	Logger nLog;
 	/* List of Adopt agents */
 	Vector Agents;
-	/* input message queues for each agent. */
-	Hashtable msgQs = null;
-	/* total number of messages sent in the system */
-	int numsent = 0;
-	/* total number of messages rcvd in the system */
-	int numrcvd = 0;
 	/*
-	 * total number of *counted* messages sent in the system. (some messages are not
-	 * counted in the final stats, e.g., messages sent to the MASTER are not
-	 * counted.
+	 * input mailboxes for each agent. also keeps the message counts (sent, rcvd,
+	 * and *counted* -- some messages are not counted in the final stats, e.g.,
+	 * messages sent to the MASTER are not counted).
 	 */
-	int msgCnt = 0;
+	MailboxBus bus = null;
+	/* signalled by each (non-master) agent as it terminates */
+	TerminationDetector detector = null;
+	/* records the agents' traffic (-DAdoptTrace), if not null */
+	TraceRecorder trace = null;
+	/* shared variable values, see AssignmentBoard */
+	AssignmentBoard board = null;
 
 	long timeStart;
 	long timeEnd;
@@ -55,9 +51,14 @@ public class Simulator implements MessageSender {
 	/* time elapsed after which to terminate program (sec) */
 	int timeMax = 7200; // 2 hrs
 
-	boolean mutex = false;
-
 	public Simulator(String args[]) {
+		this(args, null);
+	}
+
+	/*
+	 * 'log': summary logger to use; if null, log to Logs/Summary.txt.
+	 */
+	public Simulator(String args[], Logger log) {
 		try {
 
 			if (args.length != 3) {
@@ -70,20 +71,22 @@ public class Simulator implements MessageSender {
 			problemType = args[1];
 			inputFileName = args[2];
 
-			masterName = "agent" + Master.masterID;
-
 			/* Instrumentation Code */
-			PrintWriter pwtr = null;
-			String fname = "Logs/Summary.txt";
-			try {
-				FileWriter ffile = new FileWriter(fname);
-				pwtr = new PrintWriter(ffile);
-			} catch (IOException e) {
-				System.out.println("Error opening " + fname + " for logging.");
-				System.out.println("Exiting.");
-				System.exit(0);
+			if (log != null) {
+				nLog = log;
+			} else {
+				PrintWriter pwtr = null;
+				String fname = "Logs/Summary.txt";
+				try {
+					FileWriter ffile = new FileWriter(fname);
+					pwtr = new PrintWriter(ffile);
+				} catch (IOException e) {
+					System.out.println("Error opening " + fname + " for logging.");
+					System.out.println("Exiting.");
+					System.exit(0);
+				}
+				nLog = new Logger(pwtr);
 			}
-			nLog = new Logger(pwtr);
 			logAlgorithmName(nLog, algorithmName);
 			/* Done Instrumentation Code */
 
@@ -91,14 +94,41 @@ public class Simulator implements MessageSender {
 			System.err.println(ex.getMessage());
 		}
 
-		/* init message queues */
-		msgQs = new Hashtable(Collections.synchronizedMap(new Hashtable()));
+		/* init message queues, on a simulated network if one is configured */
+		NetworkModel net = NetworkModel.configured();
+		if (net != null) {
+			bus = new NetworkBus(net);
+		} else {
+			bus = new MailboxBus();
+		}
 
 	}
 
 	public void run() {
 
-		/* read Problem */
+		loadProblem();
+		createAgents();
+
+		Utility.Dprint("Simulator(): Begin Simulator run...");
+		System.out.println("Begin algorithm execution...");
+
+		timeStart = Utility.TimeMS();
+
+		if (bus instanceof NetworkBus) {
+			((NetworkBus) bus).startDelivery();
+		}
+		/* start each agent thread */
+		for (int i = 0; i < Agents.size(); i++) {
+			AgentThread at = (AgentThread) Agents.elementAt(i);
+			at.start();
+		}
+
+		loopUntilTerminated();
+	}
+
+	/* read Problem */
+	public void loadProblem() {
+
 		if (problemType.equals("maxcsp-chain")) {
 			System.out.println("----------Problem: maxcsp-chain ----------");
 			nLog.printToLogln("Problem MaxCSP (Random Chain)");
@@ -122,13 +152,18 @@ public class Simulator implements MessageSender {
 //			Runtime.getRuntime().exec("cp " + inputFileName + " Logs/");
 //		} catch (Exception e) {
 //		}
+	}
+
+	/* create an AgentThread (not yet started) for the master and for each
+	 * agent in the problem */
+	public void createAgents() {
 
 		/* init list of agents */
 		Agents = new Vector();
 		/* init Master agent */
 		AgentThread master = new AgentThread(Master.masterID, pbm, "master", this);
 		Agents.add(master);
-		addMsgReceiver(masterName);
+		addMsgReceiver(Master.masterID);
 
 		/* for each agent in the problem, create an AgentThread */
 		for (int i = 0; i < pbm.numAgents(); i++) {
@@ -142,41 +177,99 @@ public class Simulator implements MessageSender {
 
 			AgentThread at = new AgentThread(agentID, pbm, algorithmName, this);
 			Agents.add(at);
-			addMsgReceiver("agent" + agentID);
+			addMsgReceiver(agentID);
 		}
+		attachDetector();
+		attachTrace();
+		attachBoard();
+	}
 
-		Utility.Dprint("Simulator(): Begin Simulator run...");
-		System.out.println("Begin algorithm execution...");
+	/* agents publish their values on a board the Master samples, unless
+	 * -DAdoptBoard=false */
+	public void attachBoard() {
+		if (!AssignmentBoard.enabled)
+			return;
+		board = new AssignmentBoard(pbm);
+		for (int i = 0; i < Agents.size(); i++) {
+			AgentThread at = (AgentThread) Agents.elementAt(i);
+			at.algorithm.board = board;
+		}
+	}
 
-		timeStart = Utility.TimeMS();
+	/* do the agents run in synchronous cycles (see CycleSimulator)? */
+	public boolean synchronous() {
+		return false;
+	}
 
-		/* start each agent thread */
+	/* record the traffic of every (non-master) agent if -DAdoptTrace is set */
+	public void attachTrace() {
+		trace = TraceRecorder.configured(algorithmName, problemType, inputFileName, synchronous());
+		if (trace == null)
+			return;
 		for (int i = 0; i < Agents.size(); i++) {
 			AgentThread at = (AgentThread) Agents.elementAt(i);
-			at.start();
+			if (at.algorithm.localAgentID != Master.masterID)
+				trace.addAgent(at.algorithm);
 		}
+	}
 
+	/* make every (non-master) agent in Agents report its termination */
+	public void attachDetector() {
+		int cnt = 0;
+		for (int i = 0; i < Agents.size(); i++) {
+			AgentThread at = (AgentThread) Agents.elementAt(i);
+			if (at.algorithm.localAgentID != Master.masterID)
+				cnt++;
+		}
+		detector = new TerminationDetector(cnt);
+		for (int i = 0; i < Agents.size(); i++) {
+			AgentThread at = (AgentThread) Agents.elementAt(i);
+			if (at.algorithm.localAgentID != Master.masterID)
+				at.algorithm.detector = detector;
+		}
+	}
+
+	/* are all (non-master) agents done? */
+	public boolean allTerminated() {
+		for (int i = 0; i < Agents.size(); i++) {
+			AgentThread at = (AgentThread) Agents.elementAt(i);
+			/* check to see if some (non-master) agent does not want to terminate */
+			if (!at.algorithm.iWantToTerminate) {
+				if (at.algorithm.localAgentID != Master.masterID) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/* the Master agent's algorithm */
+	public Master master() {
+		for (int i = 0; i < Agents.size(); i++) {
+			AgentThread at = (AgentThread) Agents.elementAt(i);
+			if (at.algorithm.localAgentID == Master.masterID)
+				return (Master) at.algorithm;
+		}
+		return null;
+	}
+
+	public void loopUntilTerminated() {
 		while (true) {
 			try {
-				Thread.sleep(pollTime);
-				/* check for termination */
-				boolean termFlag = true;
-				for (int i = 0; i < Agents.size(); i++) {
-					AgentThread at = (AgentThread) Agents.elementAt(i);
-					/* check to see if some (non-master) agent does not want to terminate */
-					if (!at.algorithm.iWantToTerminate) {
-						if (at.algorithm.localAgentID != Master.masterID) {
-							termFlag = false;
-							break;
-						}
-					}
-				}
+				/* wait for termination, waking up every pollTime to print status */
+				boolean termFlag = detector.await(pollTime) || allTerminated();
 				if (termFlag) {
+					double latency = detector.latencyMS();
 					double t = (Utility.TimeMS() - (double) timeStart) / 1000;
 					String s = "  All agents terminated";
 					System.out.println(s + Instrumentation.fillerString(s) + t);
+					s = "  Termination latency (ms)";
+					System.out.println(s + Instrumentation.fillerString(s) + " " + latency);
+					if (nLog != null) {
+						nLog.printToLogln("TermLatency " + latency);
+					}
 					s = "  Total msgs sent";
-					System.out.println(s + Instrumentation.fillerString(s) + " " + msgCnt);
+					System.out.println(s + Instrumentation.fillerString(s) + " " + bus.msgCount());
 					printSummaryAndTerminate(false);
 				} else {
 					/* print execution status information */
@@ -184,7 +277,7 @@ public class Simulator implements MessageSender {
 					String s = "  time elapsed(sec)";
 					System.out.println(s + Instrumentation.fillerString(s) + t);
 					s = "  total msgs communicated";
-					System.out.println(s + Instrumentation.fillerString(s) + numsent + " (rcvd=" + numrcvd + ")");
+					System.out.println(s + Instrumentation.fillerString(s) + bus.numSent() + " (rcvd=" + bus.numRcvd() + ")");
 					if (t > timeMax) {
 						s = "  Max Time Elapsed";
 						System.out.println(s + Instrumentation.fillerString(s) + t);
@@ -202,168 +295,278 @@ public class Simulator implements MessageSender {
 	/* errorCondition == true means terminating abnormally */
 	public void printSummaryAndTerminate(boolean errorCondition) {
 		/* ending time is the latest ending time of any agent */
-		timeEnd = 0;
-		for (int i = 0; i < Agents.size(); i++) {
-			AgentThread at = (AgentThread) Agents.elementAt(i);
-			if (at.algorithm.timeEnd > timeEnd) {
-				timeEnd = at.algorithm.timeEnd;
-			}
-		}
+		timeEnd = latestEndTime();
 
 		double elapsed = ((double) timeEnd - timeStart) / 1000;
 
+		Master master = master();
+		/* inform master that all agents are dead, wait for it to finish up */
+		master.finish();
+		System.out.println("Done. ");
+
+		reportSolution(master, elapsed, errorCondition);
+
+		System.out.println("********* TotalTime (secs) " + elapsed + " (pollTime " + pollTime / 1000 + ") *********");
+		System.out.println("********* Thanks for playing ************");
+		System.exit(0);
+	}
+
+	/* latest ending time of any agent */
+	public long latestEndTime() {
+		long t = 0;
 		for (int i = 0; i < Agents.size(); i++) {
 			AgentThread at = (AgentThread) Agents.elementAt(i);
-			if (at.algorithm.localAgentID == Master.masterID) {
-				/* inform master that all agents are dead */
-				((Master) at.algorithm).agentsAlive = false;
-				/* wait for master to finish up */
-				while (!at.algorithm.iWantToTerminate) {
-					System.out.println("Simulator waiting for Master to finish");
-					try {
-						Thread.sleep(1000);
-					} catch (Exception e) {
-					}
-				}
-				System.out.println("Done. ");
-
-				/**************************/
-				/* Check for any lost messages */
+			if (at.algorithm.timeEnd > t) {
+				t = at.algorithm.timeEnd;
+			}
+		}
+		return t;
+	}
 
-				while (mutex)
-					try {
-						Thread.sleep(10);
-					} catch (Exception e) {
-					}
-				mutex = true;
-				/* count the number of messages left on message queues */
-				int cnt = 0;
-				Message msg = null;
-				for (int j = 0; j < Agents.size(); j++) {
-					AgentThread at2 = (AgentThread) Agents.elementAt(j);
-					int id = at2.algorithm.localAgentID;
-					LinkedList q = (LinkedList) msgQs.get("agent" + id);
-					if (q != null) {
-
-						try {
-							msg = (Message) q.removeFirst();
-						} catch (NoSuchElementException ex) {
-							msg = null;
-						}
-						while (msg != null) {
-							cnt++;
-							try {
-								msg = (Message) q.removeFirst();
-							} catch (NoSuchElementException ex) {
-								msg = null;
-							}
-						}
-					}
-				}
-				if (numsent != numrcvd + cnt) {
-					System.out.println(
-							"Simulator error....some messages may" + "have been lost or otherwise unaccounted for!");
-					String s = "  Error stats (sent,rcvd,undlvrd)";
-					System.out.println(s + Instrumentation.fillerString(s) + " " + numsent + " " + numrcvd + " " + cnt);
-					errorCondition = true;
-					if (nLog != null) {
-						nLog.printToLogln("Error msgLoss " + " " + numsent + "," + numrcvd + "," + cnt);
+	/* discard the messages left on the agents' mailboxes, return how many */
+	public long undeliveredMsgs() {
+		long cnt = 0;
+		for (int j = 0; j < Agents.size(); j++) {
+			AgentThread at2 = (AgentThread) Agents.elementAt(j);
+			int id = at2.algorithm.localAgentID;
+			cnt += bus.drain(id);
+		}
+		return cnt;
+	}
 
-					}
-				}
+	/* messages the agents dropped from their own input queues as superseded */
+	public long queueSuperseded() {
+		long cnt = 0;
+		for (int j = 0; j < Agents.size(); j++) {
+			AgentThread at2 = (AgentThread) Agents.elementAt(j);
+			cnt += at2.algorithm.numSuperseded();
+		}
+		return cnt;
+	}
 
-				/**************************/
-
-				System.out.println("\n\n");
-				System.out.println("Solution");
-				System.out.println("--------------------");
-				((Master) at.algorithm).computeQuality(0);
-				((Master) at.algorithm).logSolution();
-
-//				igor - funcao que dá só os valores das variaveis...
-//				String opa = ((Master)at.algorithm).solutionString(0);
-//				System.out.println("====================");
-//				System.out.println(opa);
-//				System.out.println("====================");
-
-				/* Print summary Information */
-				if (nLog != null) {
-					if (errorCondition) {
-						nLog.printToLogln("TotalTime2 null " + elapsed);
-					} else {
-						nLog.printToLogln("TotalTime2 " + elapsed);
-					}
-					nLog.printToLogln("TotalMsg2 " + msgCnt);
-					nLog.printToLogln("FinalSolQlty " + ((Master) at.algorithm).finalQuality());
-					nLog.printToLogln("BestSolQlty " + ((Master) at.algorithm).bestQuality());
-				}
-				break;
-			}
+	/* COSTs the agents dropped from their input queues as stale */
+	public long queueStaleCosts() {
+		long cnt = 0;
+		for (int j = 0; j < Agents.size(); j++) {
+			AgentThread at2 = (AgentThread) Agents.elementAt(j);
+			cnt += at2.algorithm.numStaleCosts();
 		}
+		return cnt;
+	}
 
-		System.out.println("********* TotalTime (secs) " + elapsed + " (pollTime " + pollTime / 1000 + ") *********");
-		System.out.println("********* Thanks for playing ************");
-		System.exit(0);
+	/* execution cycles of the agents: { max, total } */
+	public long[] agentCycles() {
+		long cyc[] = new long[2];
+		for (int j = 0; j < Agents.size(); j++) {
+			AgentThread at2 = (AgentThread) Agents.elementAt(j);
+			int n = at2.algorithm.numCycles();
+			if (n > cyc[0])
+				cyc[0] = n;
+			cyc[1] += n;
+		}
+		return cyc;
 	}
 
-	/*
-	 * Create an input msg queue agent 'aname'.
-	 */
-	public void addMsgReceiver(String aname) {
-		LinkedList msgQ = new LinkedList(Collections.synchronizedList(new LinkedList()));
-		msgQs.put(aname, msgQ);
+	/* messages the agents dispatched directly between their own pseudoagents */
+	public long localMsgs() {
+		long cnt = 0;
+		for (int j = 0; j < Agents.size(); j++) {
+			AgentThread at2 = (AgentThread) Agents.elementAt(j);
+			cnt += at2.algorithm.numLocalMsgs();
+		}
+		return cnt;
 	}
 
 	/*
-	 * some agent wants to send message 'm' to 'aname'. 'cntFlag': count this
-	 * message in the final stats?
+	 * Check for lost messages, then print and log the solution found by 'master'.
+	 * 'elapsed' is the run time (secs). errorCondition == true means terminating
+	 * abnormally.
 	 */
-	public void sendMessage(Message m, String aname, boolean cntFlag) {
-		while (mutex)
-			try {
-				Thread.sleep(10);
-			} catch (Exception e) {
+	public void reportSolution(Master master, double elapsed, boolean errorCondition) {
+		/**************************/
+		/* Check for any lost messages */
+
+		/* count the number of messages left on message queues */
+		long cnt = undeliveredMsgs();
+		long numsent = bus.numSent();
+		long numrcvd = bus.numRcvd();
+		/* messages superseded by a newer VALUE were never received */
+		long numsuper = bus.numSuperseded();
+		/* and messages the simulated network lost on purpose */
+		long numlost = bus.numLost();
+		if (numsent != numrcvd + numsuper + numlost + cnt) {
+			System.out.println(
+					"Simulator error....some messages may" + "have been lost or otherwise unaccounted for!");
+			String s = "  Error stats (sent,rcvd,supersd,lost,undlvrd)";
+			System.out.println(s + Instrumentation.fillerString(s) + " " + numsent + " " + numrcvd + " "
+					+ numsuper + " " + numlost + " " + cnt);
+			errorCondition = true;
+			if (nLog != null) {
+				nLog.printToLogln("Error msgLoss " + " " + numsent + "," + numrcvd + "," + numsuper + ","
+						+ numlost + "," + cnt);
+
+			}
+		}
+		if (bus instanceof NetworkBus) {
+			NetworkBus net = (NetworkBus) bus;
+			String s = "  Network";
+			System.out.println(s + Instrumentation.fillerString(s) + " " + net.model);
+			s = "  Network msgs lost";
+			System.out.println(s + Instrumentation.fillerString(s) + " " + numlost);
+			s = "  Network mean delay (ms)";
+			System.out.println(s + Instrumentation.fillerString(s) + " " + net.meanDelayMS());
+			if (nLog != null) {
+				nLog.printToLogln("Network " + net.model);
+				nLog.printToLogln("NetLost " + numlost);
+				nLog.printToLogln("NetMeanDelay " + net.meanDelayMS());
 			}
-		mutex = true;
-		LinkedList q = (LinkedList) msgQs.get(aname);
-		if (q != null) {
-			q.addLast(m);
-			numsent++;
-			if (cntFlag)
-				msgCnt++;
-		} else {
-			System.out.println("Simulator.sendMessage(): Unknown agent: " + aname);
 		}
-		mutex = false;
-	}
 
-	/* agent 'aname' wants a message */
-	public Message getMessage(String aname) {
-		Message msg = null;
-		while (mutex)
-			try {
-				Thread.sleep(10);
-			} catch (Exception e) {
+		/* messages dropped as superseded, in mailboxes and in the agents'
+		   own input queues */
+		long numqsuper = queueSuperseded();
+		if (EnvelopeMessage.enabled) {
+			/* envelopes make this smaller than the message count */
+			String s = "  Total bus transfers";
+			System.out.println(s + Instrumentation.fillerString(s) + " " + numsent);
+		}
+		if (ValueCoalescer.enabled) {
+			String s = "  Total msgs superseded (mbox,queue)";
+			System.out.println(s + Instrumentation.fillerString(s) + " " + numsuper + " " + numqsuper);
+		}
+		reportMailboxes();
+		long numlocal = localMsgs();
+		if (numlocal > 0) {
+			String s = "  Total local dispatches";
+			System.out.println(s + Instrumentation.fillerString(s) + " " + numlocal);
+			if (nLog != null) {
+				nLog.printToLogln("LocalMsg2 " + numlocal);
+			}
+		}
+		if (MessageScheduler.defaultMode != MessageScheduler.FIFO) {
+			long numstale = queueStaleCosts();
+			String s = "  Msg priority (mode,stale COSTs dropped)";
+			System.out.println(s + Instrumentation.fillerString(s) + " "
+					+ MessageScheduler.nameOf(MessageScheduler.defaultMode) + " " + numstale);
+			if (nLog != null) {
+				nLog.printToLogln("MsgPriority " + MessageScheduler.nameOf(MessageScheduler.defaultMode) + " "
+						+ numstale);
 			}
-		mutex = true;
-		LinkedList q = (LinkedList) msgQs.get(aname);
+		}
+		if (board != null) {
+			String s = "  Assignment board updates";
+			System.out.println(s + Instrumentation.fillerString(s) + " " + board.version());
+			if (nLog != null) {
+				nLog.printToLogln("BoardUpdates " + board.version());
+			}
+		}
+		long cyc[] = agentCycles();
+		String cs = "  Agent cycles (max,total)";
+		System.out.println(cs + Instrumentation.fillerString(cs) + " " + cyc[0] + " " + cyc[1]);
+		if (nLog != null) {
+			nLog.printToLogln("Cycles2 " + cyc[0] + " " + cyc[1]);
+		}
 
-		if (q != null) {
-			try {
-				msg = (Message) q.removeFirst();
-			} catch (NoSuchElementException ex) {
-				msg = null;
+		/**************************/
+
+		System.out.println("\n\n");
+		System.out.println("Solution");
+		System.out.println("--------------------");
+		master.computeQuality(0);
+		master.logSolution();
+
+//		igor - funcao que dá só os valores das variaveis...
+//		String opa = master.solutionString(0);
+//		System.out.println("====================");
+//		System.out.println(opa);
+//		System.out.println("====================");
+
+		/* Print summary Information */
+		if (nLog != null) {
+			if (errorCondition) {
+				nLog.printToLogln("TotalTime2 null " + elapsed);
+			} else {
+				nLog.printToLogln("TotalTime2 " + elapsed);
 			}
-			if (msg != null) {
-				numrcvd++;
-				mutex = false;
-				return msg;
+			nLog.printToLogln("TotalMsg2 " + bus.msgCount());
+			if (ValueCoalescer.enabled) {
+				nLog.printToLogln("SupersededMsg2 " + numsuper + " " + numqsuper);
 			}
-		} else {
-			System.out.println("Simulator.receiveMessage(): Unknown agent: " + aname);
+			nLog.printToLogln("FinalSolQlty " + master.finalQuality());
+			nLog.printToLogln("BestSolQlty " + master.bestQuality());
 		}
-		mutex = false;
-		return null;
+		if (trace != null) {
+			trace.close();
+			String s = "  Trace records";
+			System.out.println(s + Instrumentation.fillerString(s) + " " + trace.numRecords() + " (" + trace + ")");
+			if (nLog != null) {
+				nLog.printToLogln("Trace " + trace + " " + trace.numRecords());
+			}
+		}
+	}
+
+	/* print the largest mailbox high-water mark and log all of them */
+	public void reportMailboxes() {
+		Vector mbs = bus.mailboxes();
+		Mailbox max = null;
+		long overflow = 0;
+		long spilled = 0;
+		for (int i = 0; i < mbs.size(); i++) {
+			Mailbox mb = (Mailbox) mbs.elementAt(i);
+			if (max == null || mb.highWater() > max.highWater())
+				max = mb;
+			overflow += mb.numOverflow();
+			spilled += mb.numSpilled();
+			if (nLog != null) {
+				nLog.printToLogln("MailboxHWM " + mb.ownerOf() + " " + mb.highWater());
+			}
+		}
+		if (max == null)
+			return;
+		String s = "  Mailbox high-water (max,agent)";
+		System.out.println(s + Instrumentation.fillerString(s) + " " + max.highWater() + " " + max.ownerOf());
+		if (Mailbox.defaultCapacity > 0) {
+			s = "  Mailbox cap,policy (overflow,spilled)";
+			System.out.println(s + Instrumentation.fillerString(s) + " " + Mailbox.defaultCapacity + ","
+					+ Mailbox.nameOf(Mailbox.defaultPolicy) + " " + overflow + " " + spilled);
+			if (nLog != null) {
+				nLog.printToLogln("MailboxCap " + Mailbox.defaultCapacity + " "
+						+ Mailbox.nameOf(Mailbox.defaultPolicy) + " " + overflow + " " + spilled);
+			}
+		}
+	}
+
+	/*
+	 * Create an input msg queue for agent 'agentID'.
+	 */
+	public void addMsgReceiver(int agentID) {
+		bus.addMsgReceiver(agentID);
+	}
+
+	/*
+	 * some agent wants to send message 'm' to agent 'destAgent'. 'cntFlag':
+	 * count this message in the final stats?
+	 */
+	public void sendMessage(Message m, int destAgent, boolean cntFlag) {
+		if (trace != null)
+			trace.sent(m, destAgent);
+		bus.sendMessage(m, destAgent, cntFlag);
+	}
+
+	/* agent 'agentID' wants a message */
+	public Message getMessage(int agentID) {
+		Message m = bus.getMessage(agentID);
+		if (trace != null)
+			trace.polled(agentID, m);
+		return m;
+	}
+
+	/* agent 'agentID' wants a message, and will wait up to 'timeout' ms */
+	public Message waitMessage(int agentID, long timeout) {
+		Message m = bus.waitMessage(agentID, timeout);
+		if (trace != null)
+			trace.polled(agentID, m);
+		return m;
 	}
 
 	public static void logAlgorithmName(Logger l, String algoName) {
@@ -0,0 +1,353 @@
+/**********************************************************************
+ * File Name: SocketBus.java
+ * Date: Oct 18 2026
+ *
+ * Message bus spanning several processes.  Agents hosted in this
+ * process get an ordinary Mailbox; messages for any other agent are
+ * framed with MessageCodec and written to a non-blocking socket.
+ *
+ * The processes form a star: each worker has one connection to the
+ * coordinator, and the coordinator forwards frames between workers
+ * without decoding them.  One I/O thread per process does all the
+ * socket reads and writes; senders only queue frames.
+ *
+ * -DAdoptTransport=shm moves the agents' messages onto shared memory
+ * rings instead (see ShmBus); the sockets then only carry control
+ * frames.
+ **********************************************************************/
+
+package adopt.solver;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.io.*;
+
+public class SocketBus extends MailboxBus {
+
+  /* receives control frames and lost connections.  called on the I/O
+     thread, so it must not block. */
+  public interface Node {
+    public void controlReceived(Link from, int type, long[] vals);
+    public void linkClosed(Link link);
+  }
+
+  /* one socket connection */
+  public static class Link {
+    SocketChannel ch;
+    SelectionKey key;
+    /* partial frame being read */
+    ByteBuffer in = ByteBuffer.allocate(64*1024);
+    /* frames waiting to be written, and the one being written */
+    ConcurrentLinkedQueue out = new ConcurrentLinkedQueue();
+    volatile ByteBuffer cur = null;
+    /* worker index (on the coordinator side), -1 if not known yet */
+    public int id = -1;
+
+    Link(SocketChannel c){
+      ch = c;
+    }
+
+    /* has everything queued been written? */
+    public boolean flushed(){
+      return cur == null && out.isEmpty();
+    }
+  }
+
+  Node node;
+  Selector selector;
+  ServerSocketChannel server = null;
+  /* all open connections */
+  Vector links = new Vector();
+  /* links with frames queued but not yet seen by the I/O thread */
+  ConcurrentLinkedQueue dirty = new ConcurrentLinkedQueue();
+  /* worker: the connection to the coordinator */
+  Link upstream = null;
+  /* coordinator: route[agentID] is the link to the worker hosting it */
+  volatile Link[] route = new Link[0];
+  volatile boolean running = true;
+  Thread ioThread = null;
+
+  /* message counts reported by other processes (see addRemoteStats) */
+  AtomicLong remoteSent = new AtomicLong();
+  AtomicLong remoteRcvd = new AtomicLong();
+  AtomicLong remoteSuperseded = new AtomicLong();
+  AtomicLong remoteMsgCnt = new AtomicLong();
+
+  /* "socket" or "shm" */
+  public static String transport = System.getProperty("AdoptTransport", "socket");
+
+  public SocketBus(Node n) throws IOException {
+    node = n;
+    selector = Selector.open();
+  }
+
+  /* a bus of the configured transport */
+  public static SocketBus newBus(Node n) throws IOException {
+    if(transport.equals("shm"))
+      return new ShmBus(n);
+    return new SocketBus(n);
+  }
+
+  /* the agents are placed: nodeOf[agentID] is the process hosting
+     each agent (0..numWorkers-1 for the workers, numWorkers for the
+     coordinator), this is process 'node', and 'port' identifies the
+     run.  called before this process says HELLO. */
+  public void prepare(int[] nodeOf, int node, int port) throws IOException {
+  }
+
+  /* every process has prepared; called before any agent runs */
+  public void ready() throws IOException {
+  }
+
+  /* every agent has stopped sending: deliver whatever is still in
+     transit to the local mailboxes */
+  public void quiesce(){
+  }
+
+  /* coordinator: listen on an ephemeral local port, return the port */
+  public int listen() throws IOException {
+    server = ServerSocketChannel.open();
+    server.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+    server.configureBlocking(false);
+    server.register(selector, SelectionKey.OP_ACCEPT);
+    return server.socket().getLocalPort();
+  }
+
+  /* worker: connect to the coordinator */
+  public Link connect(String host, int port) throws IOException {
+    SocketChannel ch = SocketChannel.open(new InetSocketAddress(host, port));
+    upstream = register(ch);
+    return upstream;
+  }
+
+  Link register(SocketChannel ch) throws IOException {
+    ch.configureBlocking(false);
+    ch.socket().setTcpNoDelay(true);
+    Link l = new Link(ch);
+    l.key = ch.register(selector, SelectionKey.OP_READ, l);
+    links.add(l);
+    return l;
+  }
+
+  /* coordinator: frames for 'agentID' go out on 'l' */
+  public synchronized void setRoute(int agentID, Link l){
+    if(agentID >= route.length){
+      Link[] r = new Link[agentID+1];
+      System.arraycopy(route, 0, r, 0, route.length);
+      route = r;
+    }
+    route[agentID] = l;
+  }
+
+  Link routeOf(int agentID){
+    if(upstream != null)
+      return upstream;
+    Link[] r = route;
+    if(agentID < 0 || agentID >= r.length)
+      return null;
+    return r[agentID];
+  }
+
+  public void start(){
+    ioThread = new Thread(){
+	public void run(){
+	  ioLoop();
+	}
+      };
+    ioThread.setName("SocketBus");
+    ioThread.setDaemon(true);
+    ioThread.start();
+  }
+
+  public void close(){
+    running = false;
+    selector.wakeup();
+    try{
+      if(ioThread != null)
+	ioThread.join(1000);
+      for(int i=0;i<links.size();i++)
+	((Link) links.elementAt(i)).ch.close();
+      if(server != null)
+	server.close();
+      selector.close();
+    }catch(Exception e){
+    }
+  }
+
+  /* local agents are served by MailboxBus, everybody else over the
+     network */
+  public void sendMessage(Message m, int dest, boolean cntFlag){
+    if(mailboxOf(dest) != null){
+      super.sendMessage(m, dest, cntFlag);
+      return;
+    }
+    Link l = routeOf(dest);
+    if(l == null){
+      System.out.println("SocketBus.sendMessage(): Unknown agent: agent" + dest);
+      return;
+    }
+    queue(l, MessageCodec.frame(dest, m));
+    numsent.incrementAndGet();
+    if(cntFlag)
+      msgCnt.addAndGet(m.count());
+  }
+
+  public void sendControl(Link l, int type, long[] vals){
+    queue(l, MessageCodec.control(type, vals));
+  }
+
+  void queue(Link l, ByteBuffer frame){
+    l.out.add(frame);
+    dirty.add(l);
+    selector.wakeup();
+  }
+
+  void ioLoop(){
+    try{
+      while(running){
+	selector.select();
+	/* pick up newly queued frames */
+	Link l;
+	while((l = (Link) dirty.poll()) != null){
+	  if(l.key.isValid())
+	    l.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+	}
+	Iterator it = selector.selectedKeys().iterator();
+	while(it.hasNext()){
+	  SelectionKey k = (SelectionKey) it.next();
+	  it.remove();
+	  if(!k.isValid())
+	    continue;
+	  if(k.isAcceptable()){
+	    SocketChannel ch = server.accept();
+	    if(ch != null)
+	      register(ch);
+	    continue;
+	  }
+	  l = (Link) k.attachment();
+	  try{
+	    if(k.isReadable())
+	      read(l);
+	    if(k.isValid() && k.isWritable())
+	      write(l);
+	  }catch(IOException e){
+	    k.cancel();
+	    node.linkClosed(l);
+	  }
+	}
+      }
+    }catch(ClosedSelectorException e){
+    }catch(IOException e){
+      System.out.println("SocketBus: " + e);
+    }
+  }
+
+  void read(Link l) throws IOException {
+    if(l.ch.read(l.in) < 0)
+      throw new EOFException();
+    ByteBuffer b = l.in;
+    b.flip();
+    /* hand over every complete frame */
+    while(b.remaining() >= 4){
+      int len = b.getInt(b.position());
+      if(b.remaining() < 4 + len)
+	break;
+      int end = b.position() + 4 + len;
+      ByteBuffer frame = b.duplicate();
+      frame.limit(end);
+      received(l, frame);
+      b.position(end);
+    }
+    b.compact();
+    /* make room for a frame larger than the buffer */
+    if(b.position() >= 4 && b.getInt(0) + 4 > b.capacity()){
+      ByteBuffer bigger = ByteBuffer.allocate(b.getInt(0) + 4);
+      b.flip();
+      bigger.put(b);
+      l.in = bigger;
+    }
+  }
+
+  void write(Link l) throws IOException {
+    while(true){
+      if(l.cur == null)
+	l.cur = (ByteBuffer) l.out.poll();
+      if(l.cur == null){
+	l.key.interestOps(SelectionKey.OP_READ);
+	/* a frame queued since the poll() above is in 'dirty' */
+	return;
+      }
+      l.ch.write(l.cur);
+      if(l.cur.hasRemaining())
+	return;
+      l.cur = null;
+    }
+  }
+
+  /* one complete frame, from its length field on */
+  void received(Link from, ByteBuffer frame){
+    int start = frame.position();
+    frame.getInt();
+    int dest = frame.getInt();
+    if(dest < 0){
+      int type = frame.get();
+      node.controlReceived(from, type, MessageCodec.controlValues(frame));
+      return;
+    }
+    Mailbox mb = mailboxOf(dest);
+    if(mb != null){
+      /* this is the I/O thread: waiting for room here would stall
+	 every connection of the process */
+      mb.offer(MessageCodec.get(frame));
+      return;
+    }
+    /* coordinator: pass it on unchanged */
+    Link l = routeOf(dest);
+    if(l == null || l == from){
+      System.out.println("SocketBus: no route to agent" + dest);
+      return;
+    }
+    frame.position(start);
+    ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+    copy.put(frame);
+    copy.flip();
+    queue(l, copy);
+  }
+
+  /* true once every connection has written out all it has queued */
+  public boolean flushed(){
+    for(int i=0;i<links.size();i++)
+      if(!((Link) links.elementAt(i)).flushed())
+	return false;
+    return true;
+  }
+
+  /* add counts reported by another process to the totals */
+  public void addRemoteStats(long sent, long rcvd, long superseded, long cnt){
+    remoteSent.addAndGet(sent);
+    remoteRcvd.addAndGet(rcvd);
+    remoteSuperseded.addAndGet(superseded);
+    remoteMsgCnt.addAndGet(cnt);
+  }
+
+  /* totals over this process and all that have reported */
+  public long numSent(){
+    return super.numSent() + remoteSent.get();
+  }
+
+  public long numRcvd(){
+    return super.numRcvd() + remoteRcvd.get();
+  }
+
+  public long numSuperseded(){
+    return super.numSuperseded() + remoteSuperseded.get();
+  }
+
+  public long msgCount(){
+    return super.msgCount() + remoteMsgCnt.get();
+  }
+}
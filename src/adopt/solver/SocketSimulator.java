@@ -0,0 +1,311 @@
+/*
+ *    SocketSimulator.java
+ *    Date: Oct 18 2026
+ *
+ *    Runs a DCOP algorithm with its agents spread over several worker
+ *    processes on this host.  This process is the coordinator: it
+ *    launches the workers (SocketWorker), forwards messages between
+ *    them, runs the Master, detects termination and gathers the final
+ *    message counts and solution.
+ *
+ *    Usage: SocketSimulator <alg> <ptype> <file> <numWorkers>
+ *
+ *    System properties starting with "Adopt" are passed on to the
+ *    workers.
+ */
+
+package adopt.solver;
+
+import adopt.common.*;
+import adopt.problem.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+public class SocketSimulator extends Simulator implements SocketBus.Node {
+
+	int numWorkers;
+	SocketBus sbus;
+	/* worker processes */
+	Vector workers = new Vector();
+	/* connection to each worker, by worker index */
+	SocketBus.Link[] links;
+	/* number of workers that said HELLO, DONE and sent STATS */
+	int numHello = 0;
+	int numDone = 0;
+	int numStats = 0;
+	boolean shuttingDown = false;
+	/* latest end time reported by a worker (wall clock ms) */
+	long remoteEnd = 0;
+	/* undelivered and queue-superseded counts reported by workers */
+	long remoteUndelivered = 0;
+	long remoteQSuperseded = 0;
+	long remoteStaleCosts = 0;
+	long remoteMaxCycles = 0;
+	long remoteCycles = 0;
+	/* how long to wait for the workers to connect / report (ms) */
+	int workerTimeout = 60000;
+
+	public SocketSimulator(String args[]) throws IOException {
+		super(new String[] { args[0], args[1], args[2] });
+		numWorkers = Integer.parseInt(args[3]);
+		links = new SocketBus.Link[numWorkers];
+		sbus = SocketBus.newBus(this);
+		bus = sbus;
+	}
+
+	public void run() {
+
+		loadProblem();
+		createAgents();
+
+		try {
+			int port = sbus.listen();
+			sbus.prepare(nodeMap(pbm, numWorkers), numWorkers, port);
+			sbus.start();
+			launchWorkers(port);
+		} catch (IOException e) {
+			System.out.println("SocketSimulator: cannot launch workers: " + e);
+			abort();
+		}
+
+		/* wait for every worker to report its agents */
+		synchronized (this) {
+			long deadline = System.currentTimeMillis() + workerTimeout;
+			while (numHello < numWorkers && System.currentTimeMillis() < deadline) {
+				try {
+					wait(1000);
+				} catch (InterruptedException e) {
+				}
+			}
+			if (numHello < numWorkers) {
+				System.out.println("SocketSimulator: only " + numHello + " of " + numWorkers + " workers connected.");
+				abort();
+			}
+		}
+
+		try {
+			sbus.ready();
+		} catch (IOException e) {
+			System.out.println("SocketSimulator: " + e);
+			abort();
+		}
+
+		System.out.println("Begin algorithm execution (" + numWorkers + " worker processes, "
+				+ SocketBus.transport + ")...");
+		timeStart = Utility.TimeMS();
+		for (int i = 0; i < numWorkers; i++)
+			sbus.sendControl(links[i], MessageCodec.START, new long[0]);
+		for (int i = 0; i < Agents.size(); i++) {
+			AgentThread at = (AgentThread) Agents.elementAt(i);
+			at.start();
+		}
+
+		loopUntilTerminated();
+	}
+
+	/* start the worker processes; they connect back to 'port' */
+	void launchWorkers(int port) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		for (int i = 0; i < numWorkers; i++) {
+			Vector cmd = new Vector();
+			cmd.add(java);
+			cmd.add("-cp");
+			cmd.add(System.getProperty("java.class.path"));
+			Enumeration e = System.getProperties().propertyNames();
+			while (e.hasMoreElements()) {
+				String key = (String) e.nextElement();
+				if (key.startsWith("Adopt"))
+					cmd.add("-D" + key + "=" + System.getProperty(key));
+			}
+			cmd.add("adopt.solver.SocketWorker");
+			cmd.add(algorithmName);
+			cmd.add(problemType);
+			cmd.add(inputFileName);
+			cmd.add("127.0.0.1");
+			cmd.add("" + port);
+			cmd.add("" + i);
+			cmd.add("" + numWorkers);
+			ProcessBuilder pb = new ProcessBuilder(cmd);
+			pb.inheritIO();
+			workers.add(pb.start());
+		}
+	}
+
+	/*
+	 * process hosting each agent, indexed by agentID: agent pbm.agents[i] runs
+	 * on worker i % numWorkers, the Master here (numWorkers). -1 for unused IDs.
+	 */
+	public static int[] nodeMap(Problem pbm, int numWorkers) {
+		int maxID = Master.masterID;
+		for (int i = 0; i < pbm.numAgents(); i++) {
+			int agentID = ((Integer) pbm.agents.elementAt(i)).intValue();
+			if (agentID > maxID)
+				maxID = agentID;
+		}
+		int[] nodeOf = new int[maxID + 1];
+		Arrays.fill(nodeOf, -1);
+		for (int i = 0; i < pbm.numAgents(); i++) {
+			int agentID = ((Integer) pbm.agents.elementAt(i)).intValue();
+			nodeOf[agentID] = i % numWorkers;
+		}
+		nodeOf[Master.masterID] = numWorkers;
+		return nodeOf;
+	}
+
+	/* only the Master runs here */
+	public void createAgents() {
+		Agents = new Vector();
+		AgentThread master = new AgentThread(Master.masterID, pbm, "master", this);
+		Agents.add(master);
+		addMsgReceiver(Master.masterID);
+	}
+
+	public synchronized boolean allTerminated() {
+		return numDone == numWorkers;
+	}
+
+	public void loopUntilTerminated() {
+		while (true) {
+			synchronized (this) {
+				try {
+					wait(pollTime);
+				} catch (InterruptedException e) {
+				}
+			}
+			double t = (Utility.TimeMS() - (double) timeStart) / 1000;
+			if (allTerminated()) {
+				shutdownWorkers();
+				String s = "  All agents terminated";
+				System.out.println(s + Instrumentation.fillerString(s) + t);
+				s = "  Total msgs sent";
+				System.out.println(s + Instrumentation.fillerString(s) + " " + bus.msgCount());
+				printSummaryAndTerminate(false);
+			}
+			String s = "  time elapsed(sec)";
+			System.out.println(s + Instrumentation.fillerString(s) + t);
+			s = "  workers done";
+			System.out.println(s + Instrumentation.fillerString(s) + numDone + " of " + numWorkers);
+			if (t > timeMax) {
+				s = "  Max Time Elapsed";
+				System.out.println(s + Instrumentation.fillerString(s) + t);
+				if (nLog != null) {
+					nLog.printToLogln("Error maxtime " + timeMax);
+				}
+				abort();
+			}
+		}
+	}
+
+	/* tell every worker to stop, and wait for their final counts */
+	synchronized void shutdownWorkers() {
+		shuttingDown = true;
+		for (int i = 0; i < numWorkers; i++)
+			sbus.sendControl(links[i], MessageCodec.SHUTDOWN, new long[0]);
+		long deadline = System.currentTimeMillis() + workerTimeout;
+		while (numStats < numWorkers && System.currentTimeMillis() < deadline) {
+			try {
+				wait(1000);
+			} catch (InterruptedException e) {
+			}
+		}
+		if (numStats < numWorkers)
+			System.out.println("SocketSimulator: only " + numStats + " of " + numWorkers + " workers reported.");
+		sbus.quiesce();
+		/* let the workers clean up before we do */
+		for (int i = 0; i < workers.size(); i++) {
+			try {
+				((Process) workers.elementAt(i)).waitFor(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+			}
+		}
+	}
+
+	/* stop all workers and exit with an error */
+	void abort() {
+		shuttingDown = true;
+		for (int i = 0; i < workers.size(); i++)
+			((Process) workers.elementAt(i)).destroy();
+		System.exit(1);
+	}
+
+	public synchronized void controlReceived(SocketBus.Link from, int type, long[] vals) {
+		if (type == MessageCodec.HELLO) {
+			from.id = (int) vals[0];
+			links[from.id] = from;
+			for (int i = 1; i < vals.length; i++)
+				sbus.setRoute((int) vals[i], from);
+			numHello++;
+		} else if (type == MessageCodec.DONE) {
+			if (vals[0] > remoteEnd)
+				remoteEnd = vals[0];
+			numDone++;
+		} else if (type == MessageCodec.STATS) {
+			sbus.addRemoteStats(vals[0], vals[1], vals[2], vals[3]);
+			remoteUndelivered += vals[4];
+			remoteQSuperseded += vals[5];
+			remoteStaleCosts += vals[6];
+			if (vals[7] > remoteMaxCycles)
+				remoteMaxCycles = vals[7];
+			remoteCycles += vals[8];
+			numStats++;
+		}
+		notifyAll();
+	}
+
+	public void linkClosed(SocketBus.Link link) {
+		if (shuttingDown)
+			return;
+		System.out.println("SocketSimulator: lost worker " + link.id + ", exiting.");
+		abort();
+	}
+
+	public long latestEndTime() {
+		long t = super.latestEndTime();
+		/* workers report wall clock time */
+		if (remoteEnd - Utility.starttime > t)
+			t = remoteEnd - Utility.starttime;
+		return t;
+	}
+
+	public long undeliveredMsgs() {
+		return super.undeliveredMsgs() + remoteUndelivered;
+	}
+
+	public long queueSuperseded() {
+		return super.queueSuperseded() + remoteQSuperseded;
+	}
+
+	public long queueStaleCosts() {
+		return super.queueStaleCosts() + remoteStaleCosts;
+	}
+
+	public long[] agentCycles() {
+		long cyc[] = super.agentCycles();
+		if (remoteMaxCycles > cyc[0])
+			cyc[0] = remoteMaxCycles;
+		cyc[1] += remoteCycles;
+		return cyc;
+	}
+
+	public void printSummaryAndTerminate(boolean errorCondition) {
+		if (!shuttingDown)
+			shutdownWorkers();
+		super.printSummaryAndTerminate(errorCondition);
+	}
+
+	public static void main(String argv[]) {
+		if (argv.length != 4) {
+			System.out.println("Usage: SocketSimulator "
+					+ "<algorithm-name> <problem-type> <input-filename> <numWorkers>");
+			System.exit(0);
+		}
+		try {
+			new SocketSimulator(argv).run();
+		} catch (IOException e) {
+			System.out.println("SocketSimulator: " + e);
+			System.exit(1);
+		}
+	}
+}
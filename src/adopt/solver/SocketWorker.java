@@ -0,0 +1,158 @@
+/*
+ *    SocketWorker.java
+ *    Date: Oct 18 2026
+ *
+ *    One worker process of a multi-process run (see SocketSimulator).
+ *    Hosts every agent pbm.agents[i] with i % numWorkers == index and
+ *    talks to the other processes through the coordinator.
+ */
+
+package adopt.solver;
+
+import adopt.common.*;
+import adopt.problem.*;
+
+import java.util.*;
+import java.io.*;
+
+public class SocketWorker extends Simulator implements SocketBus.Node {
+
+	/* which worker this is, out of how many */
+	int index;
+	int numWorkers;
+	/* where the coordinator listens */
+	String host;
+	int port;
+	SocketBus sbus;
+	SocketBus.Link coordinator;
+	/* set by the coordinator's START / SHUTDOWN frames */
+	boolean started = false;
+	boolean shutdown = false;
+
+	public SocketWorker(String args[]) throws IOException {
+		super(new String[] { args[0], args[1], args[2] }, new Logger(Logger.nullWriter()));
+		host = args[3];
+		port = Integer.parseInt(args[4]);
+		index = Integer.parseInt(args[5]);
+		numWorkers = Integer.parseInt(args[6]);
+		sbus = SocketBus.newBus(this);
+		bus = sbus;
+	}
+
+	public void run() {
+
+		loadProblem();
+		createAgents();
+
+		try {
+			coordinator = sbus.connect(host, port);
+			sbus.prepare(SocketSimulator.nodeMap(pbm, numWorkers), index, port);
+		} catch (IOException e) {
+			System.out.println("Worker " + index + ": cannot connect to " + host + ":" + port + ": " + e);
+			System.exit(1);
+		}
+		sbus.start();
+
+		/* tell the coordinator which agents live here, and wait for the go */
+		long[] hello = new long[Agents.size() + 1];
+		hello[0] = index;
+		for (int i = 0; i < Agents.size(); i++) {
+			AgentThread at = (AgentThread) Agents.elementAt(i);
+			hello[i + 1] = at.algorithm.localAgentID;
+		}
+		sbus.sendControl(coordinator, MessageCodec.HELLO, hello);
+		synchronized (this) {
+			while (!started) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+
+		try {
+			sbus.ready();
+		} catch (IOException e) {
+			System.out.println("Worker " + index + ": " + e);
+			System.exit(1);
+		}
+
+		timeStart = Utility.TimeMS();
+		for (int i = 0; i < Agents.size(); i++) {
+			AgentThread at = (AgentThread) Agents.elementAt(i);
+			at.start();
+		}
+
+		while (!detector.await(pollTime))
+			;
+		/* end time as wall clock time, the coordinator's clock starts elsewhere */
+		sbus.sendControl(coordinator, MessageCodec.DONE, new long[] { Utility.starttime + latestEndTime() });
+
+		synchronized (this) {
+			while (!shutdown) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+		sbus.quiesce();
+		long cnt = undeliveredMsgs();
+		long cyc[] = agentCycles();
+		sbus.sendControl(coordinator, MessageCodec.STATS, new long[] { sbus.numSent(), sbus.numRcvd(),
+				sbus.numSuperseded(), sbus.msgCount(), cnt, queueSuperseded(), queueStaleCosts(), cyc[0], cyc[1] });
+		for (int i = 0; i < 100 && !sbus.flushed(); i++) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+			}
+		}
+		sbus.close();
+		System.exit(0);
+	}
+
+	/* create an AgentThread for each agent this worker hosts */
+	public void createAgents() {
+		Agents = new Vector();
+		for (int i = 0; i < pbm.numAgents(); i++) {
+			if (i % numWorkers != index)
+				continue;
+			int agentID = ((Integer) pbm.agents.elementAt(i)).intValue();
+			AgentThread at = new AgentThread(agentID, pbm, algorithmName, this);
+			Agents.add(at);
+			addMsgReceiver(agentID);
+		}
+		attachDetector();
+	}
+
+	public synchronized void controlReceived(SocketBus.Link from, int type, long[] vals) {
+		if (type == MessageCodec.START) {
+			started = true;
+		} else if (type == MessageCodec.SHUTDOWN) {
+			shutdown = true;
+		}
+		notifyAll();
+	}
+
+	public void linkClosed(SocketBus.Link link) {
+		if (shutdown)
+			return;
+		System.out.println("Worker " + index + ": lost the coordinator, exiting.");
+		System.exit(1);
+	}
+
+	/* Usage: SocketWorker <alg> <ptype> <file> <host> <port> <index> <numWorkers> */
+	public static void main(String argv[]) {
+		if (argv.length != 7) {
+			System.out.println("Usage: SocketWorker "
+					+ "<algorithm-name> <problem-type> <input-filename> <host> <port> <index> <numWorkers>");
+			System.exit(0);
+		}
+		try {
+			new SocketWorker(argv).run();
+		} catch (IOException e) {
+			System.out.println("SocketWorker: " + e);
+			System.exit(1);
+		}
+	}
+}
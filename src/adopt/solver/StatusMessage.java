@@ -0,0 +1,23 @@
+/**
+  * STATUS message: an agent reports a variable's current value to the
+  * Master.
+  */
+
+package adopt.solver;
+
+public class StatusMessage extends Message {
+
+  /* domain index of the variable's value */
+  public int value;
+
+  public StatusMessage (int destAgent, int sourceAgent, int sourceVar, 
+			int value) {
+    super(STATUS, destAgent, sourceAgent, -1, sourceVar);
+    this.value = value;
+  }
+
+  /* Msg format: "STATUS <variable> <current val>" */
+  public String rawMessage() { 
+    return "STATUS var" + sourceVar + " " + value;
+  }
+}
@@ -0,0 +1,43 @@
+/**
+  * TERMINATE message.  Adopt sends it bare; SBB also sends the cost and
+  * the solution it terminates with.
+  */
+
+package adopt.solver;
+
+import adopt.problem.*;
+
+public class TerminateMessage extends Message {
+
+  public int cost = 0;
+  /* context: varIDs and domain indices of their values */
+  public int[] ctxVars = new int[0];
+  public int[] ctxVals = new int[0];
+
+  public TerminateMessage (int destAgent, int sourceAgent, int destVar, 
+			   int sourceVar) {
+    super(TERMINATE, destAgent, sourceAgent, destVar, sourceVar);
+  }
+
+  public TerminateMessage (int destAgent, int sourceAgent, int destVar, 
+			   int sourceVar, int cost, Context vw) {
+    super(TERMINATE, destAgent, sourceAgent, destVar, sourceVar);
+    this.cost = cost;
+    ctxVars = vw.varIDs();
+    ctxVals = vw.valueIndices();
+  }
+
+  public TerminateMessage (int destAgent, int sourceAgent, int destVar, 
+			   int sourceVar, int cost, int[] ctxVars, int[] ctxVals) {
+    super(TERMINATE, destAgent, sourceAgent, destVar, sourceVar);
+    this.cost = cost;
+    this.ctxVars = ctxVars;
+    this.ctxVals = ctxVals;
+  }
+
+  /* Msg format: "TERMINATE  <destvar> <sourcevariable> <cost> <Context>" */
+  public String rawMessage() { 
+    return Adopt.TERM + " var" + destVar + " var" + sourceVar + " " + cost 
+      + contextString(ctxVars, ctxVals);
+  }
+}
@@ -0,0 +1,55 @@
+/**********************************************************************
+ * File Name: TerminationDetector.java
+ * Date: Oct 18 2026
+ *
+ * Global termination detection without polling: every agent calls
+ * terminated() once, as the last thing it does, and the simulator
+ * waits in await() until all of them have.
+ **********************************************************************/
+
+package adopt.solver;
+
+import java.util.concurrent.*;
+
+public class TerminationDetector {
+
+  CountDownLatch latch;
+  /* System.nanoTime() of the latest terminated() call */
+  volatile long lastSignal = 0;
+
+  public TerminationDetector(int numAgents){
+    latch = new CountDownLatch(numAgents);
+  }
+
+  /* one agent is done.  call exactly once per agent, after its final
+     reports have been sent. */
+  public void terminated(){
+    lastSignal = System.nanoTime();
+    latch.countDown();
+  }
+
+  /* wait up to 'timeout' ms for all agents; true if they are done */
+  public boolean await(long timeout){
+    try{
+      return latch.await(timeout, TimeUnit.MILLISECONDS);
+    }catch(InterruptedException e){
+      return done();
+    }
+  }
+
+  public boolean done(){
+    return latch.getCount() == 0;
+  }
+
+  /* number of agents still running */
+  public long numRunning(){
+    return latch.getCount();
+  }
+
+  /* ms from the last agent terminating until now.  this includes
+     the time for the waiting thread to be scheduled again, so it is
+     usually well under a ms but can be several ms on a busy host */
+  public double latencyMS(){
+    return (System.nanoTime() - lastSignal) / 1000000.0;
+  }
+}
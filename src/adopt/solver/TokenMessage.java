@@ -0,0 +1,37 @@
+/**
+  * SBB TOKEN message: a partial solution and its cost.
+  */
+
+package adopt.solver;
+
+import adopt.problem.*;
+
+public class TokenMessage extends Message {
+
+  public int cost;
+  /* partial solution: varIDs and domain indices of their values */
+  public int[] ctxVars;
+  public int[] ctxVals;
+
+  public TokenMessage (int destAgent, int sourceAgent, int destVar, 
+		       int sourceVar, int cost, Context vw) {
+    super(TOKEN, destAgent, sourceAgent, destVar, sourceVar);
+    this.cost = cost;
+    ctxVars = vw.varIDs();
+    ctxVals = vw.valueIndices();
+  }
+
+  public TokenMessage (int destAgent, int sourceAgent, int destVar, 
+		       int sourceVar, int cost, int[] ctxVars, int[] ctxVals) {
+    super(TOKEN, destAgent, sourceAgent, destVar, sourceVar);
+    this.cost = cost;
+    this.ctxVars = ctxVars;
+    this.ctxVals = ctxVals;
+  }
+
+  /* Msg format: "TOKEN  <destvariable> <sourcevar> <cost> <Context>" */
+  public String rawMessage() { 
+    return SBB.TOKEN + " var" + destVar + " var" + sourceVar + " " + cost 
+      + contextString(ctxVars, ctxVals);
+  }
+}
@@ -0,0 +1,192 @@
+/**********************************************************************
+ * File Name: TraceRecorder.java
+ * Date: Oct 18 2026
+ *
+ * Records the message traffic of a simulator run to a binary trace
+ * file (-DAdoptTrace=<file>), so that TraceReplay can feed the exact
+ * same deliveries to the agents again, on one thread.
+ *
+ * The file starts with a header
+ *
+ *   <int MAGIC> <int VERSION> <UTF algorithm> <UTF problem type>
+ *   <UTF problem file> <boolean coalesce> <boolean batch>
+ *   <int mailbox cap> <boolean direct dispatch> <int msg priority>
+ *   <boolean synchronous>
+ *
+ * followed by records
+ *
+ *   <byte event> <long time (us)> <int agent> <int peer> [<int len> <msg>]
+ *
+ * SEND:    'agent' sent the message to 'peer'
+ * DELIVER: 'agent' got the message from 'peer'
+ * POLL:    'agent' found its mailbox empty, or took as many messages
+ *          as Mailbox.pollLimit() lets it, ending the execution
+ *          cycle's collection of messages.  'peer' is -1, no message.
+ *
+ * The message is encoded as by MessageCodec.put().  Traffic to and
+ * from the Master is not recorded, nor are the polls of agents with
+ * nothing to do (they do not change the agent).
+ **********************************************************************/
+
+package adopt.solver;
+
+import adopt.common.*;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+
+public class TraceRecorder {
+
+  public static String fileName = System.getProperty("AdoptTrace");
+
+  public static final int MAGIC = 0x41445452;
+  public static final int VERSION = 5;
+
+  public static final int SEND = 1;
+  public static final int DELIVER = 2;
+  public static final int POLL = 3;
+
+  DataOutputStream out;
+  String name;
+  long wallStart = System.nanoTime();
+  long numRecords = 0;
+  /* what is recorded about one agent.  only touched by the thread
+     running that agent. */
+  static class Agent {
+    Algorithm alg;
+    /* its next execution cycle has work to do, or it got a message
+       since its last recorded poll */
+    boolean pending = false;
+    /* messages it has got in the current cycle */
+    int numPolled = 0;
+  }
+
+  /* the Agents, keyed by agent ID */
+  LongMap agents = new LongMap();
+
+  public TraceRecorder(String fname, String alg, String ptype, String pfile, 
+		       boolean synchronous) throws IOException {
+    name = fname;
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fname), 1 << 16));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeUTF(alg);
+    out.writeUTF(ptype);
+    out.writeUTF(pfile);
+    out.writeBoolean(ValueCoalescer.enabled);
+    out.writeBoolean(EnvelopeMessage.enabled);
+    out.writeInt(Mailbox.defaultCapacity);
+    out.writeBoolean(Intradopt.directDispatch);
+    out.writeInt(MessageScheduler.defaultMode);
+    out.writeBoolean(synchronous);
+  }
+
+  /* the recorder given by -DAdoptTrace, or null if there is none */
+  public static TraceRecorder configured(String alg, String ptype, String pfile, 
+					 boolean synchronous){
+    if(fileName == null || fileName.length() == 0)
+      return null;
+    try{
+      return new TraceRecorder(fileName, alg, ptype, pfile, synchronous);
+    }catch(IOException e){
+      System.out.println("TraceRecorder: cannot write " + fileName + ": " + e);
+      return null;
+    }
+  }
+
+  /* record the polls of 'alg' */
+  public void addAgent(Algorithm alg){
+    Agent a = new Agent();
+    a.alg = alg;
+    a.pending = true;
+    agents.putIfAbsent(alg.localAgentID, a);
+  }
+
+  /* current time (us) */
+  long nowUS(){
+    if(Utility.virtualTime >= 0)
+      return Utility.virtualTime * 1000;
+    return (System.nanoTime() - wallStart) / 1000;
+  }
+
+  static boolean isMaster(int id){
+    return id == Master.masterID;
+  }
+
+  public void sent(Message m, int dest){
+    if(isMaster(dest) || isMaster(m.sourceAgent))
+      return;
+    write(SEND, m.sourceAgent, dest, m);
+  }
+
+  /* agent 'id' polled its mailbox and got 'm' (null: nothing) */
+  public void polled(int id, Message m){
+    if(isMaster(id))
+      return;
+    Agent a = (Agent) agents.get(id);
+    if(a == null)
+      a = (Agent) agents.putIfAbsent(id, new Agent());
+    if(m != null){
+      a.pending = true;
+      write(DELIVER, id, m.sourceAgent, m);
+      /* the agent stops polling at the limit */
+      if(++a.numPolled < Mailbox.pollLimit())
+	return;
+    }
+    a.numPolled = 0;
+    boolean work = a.alg != null && a.alg.hasWork();
+    /* an empty poll only matters if the cycle did something: it got
+       messages, or will handle some in the next cycle */
+    if(m == null && !a.pending && !work)
+      return;
+    a.pending = work;
+    write(POLL, id, -1, null);
+  }
+
+  void write(int event, int agent, int peer, Message m){
+    byte[] body = null;
+    if(m != null){
+      ByteBuffer b = ByteBuffer.allocate(MessageCodec.sizeOf(m));
+      MessageCodec.put(b, m);
+      body = b.array();
+    }
+    synchronized(this){
+      if(out == null)
+	return;
+      try{
+	out.writeByte(event);
+	out.writeLong(nowUS());
+	out.writeInt(agent);
+	out.writeInt(peer);
+	if(body != null){
+	  out.writeInt(body.length);
+	  out.write(body);
+	}
+	numRecords++;
+      }catch(IOException e){
+	System.out.println("TraceRecorder: write failed, trace stopped: " + e);
+	out = null;
+      }
+    }
+  }
+
+  public synchronized void close(){
+    if(out == null)
+      return;
+    try{
+      out.close();
+    }catch(IOException e){
+      System.out.println("TraceRecorder: close failed: " + e);
+    }
+    out = null;
+  }
+
+  public long numRecords(){
+    return numRecords;
+  }
+
+  public String toString(){
+    return name;
+  }
+}
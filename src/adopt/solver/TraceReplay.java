@@ -0,0 +1,267 @@
+/*
+ *    TraceReplay.java
+ *    Date: Oct 18 2026
+ *
+ *    Replays a trace written by TraceRecorder (-DAdoptTrace): builds
+ *    the agents of the traced run and, on a single thread, runs each
+ *    execution cycle in the order the cycles ended in the original
+ *    run, handing each agent exactly the messages it received then.
+ *    The messages the agents send are checked against the trace
+ *    instead of being delivered.
+ *
+ *    The replay is deterministic, which makes it the place to
+ *    profile the handlers (backtrack() and friends) or to compare
+ *    two builds on the same message order:
+ *
+ *      java adopt.solver.TraceReplay <trace-file> [repeat]
+ *
+ *    'repeat' replays the (in-memory) trace that many times.
+ */
+
+package adopt.solver;
+
+import adopt.common.*;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+
+public class TraceReplay extends Simulator {
+
+	/* one trace record */
+	static class Record {
+		int event;
+		long time;
+		int agent;
+		int peer;
+		byte[] body;
+	}
+
+	Vector records = new Vector();
+	/* the agents, keyed by agent ID */
+	Hashtable algs = new Hashtable();
+	/* messages to hand out in the current cycle, per agent ID */
+	Hashtable batches = new Hashtable();
+	/* traced sends not made yet, and sends made before the trace got
+	 * to them (e.g. from setup()), per agent ID */
+	Hashtable expected = new Hashtable();
+	Hashtable early = new Hashtable();
+
+	/* was the trace written by CycleSimulator? */
+	static boolean synchronousTrace = false;
+
+	long numCycles = 0;
+	long numDelivered = 0;
+	long numMatched = 0;
+	long numMismatched = 0;
+
+	TraceReplay(String header[], Vector recs) {
+		super(header, new Logger(Logger.nullWriter()));
+		records = recs;
+	}
+
+	/* read 'fname'.  header[] gets the algorithm, problem type and file */
+	static Vector readTrace(String fname, String header[]) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fname), 1 << 16));
+		Vector recs = new Vector();
+		try {
+			if (in.readInt() != TraceRecorder.MAGIC)
+				throw new IOException(fname + " is not a trace file");
+			int version = in.readInt();
+			if (version != TraceRecorder.VERSION)
+				throw new IOException(fname + ": unsupported trace version " + version);
+			header[0] = in.readUTF();
+			header[1] = in.readUTF();
+			header[2] = in.readUTF();
+			ValueCoalescer.enabled = in.readBoolean();
+			EnvelopeMessage.enabled = in.readBoolean();
+			/* the cap decides how many messages an agent polls per cycle */
+			Mailbox.defaultCapacity = in.readInt();
+			Intradopt.directDispatch = in.readBoolean();
+			MessageScheduler.defaultMode = in.readInt();
+			synchronousTrace = in.readBoolean();
+			while (true) {
+				int event = in.read();
+				if (event < 0)
+					break;
+				Record r = new Record();
+				r.event = event;
+				r.time = in.readLong();
+				r.agent = in.readInt();
+				r.peer = in.readInt();
+				if (event != TraceRecorder.POLL) {
+					r.body = new byte[in.readInt()];
+					in.readFully(r.body);
+				}
+				recs.add(r);
+			}
+		} catch (EOFException e) {
+			System.out.println("TraceReplay: trace is truncated, replaying " + recs.size() + " records");
+		} finally {
+			in.close();
+		}
+		return recs;
+	}
+
+	/* the recorder must not trace the replay */
+	public void attachTrace() {
+	}
+
+	LinkedList queueOf(Hashtable h, int agentID) {
+		Integer key = Integer.valueOf(agentID);
+		LinkedList q = (LinkedList) h.get(key);
+		if (q == null) {
+			q = new LinkedList();
+			h.put(key, q);
+		}
+		return q;
+	}
+
+	/* fresh agents, set up as in the traced run */
+	void resetAgents() {
+		createAgents();
+		algs.clear();
+		batches.clear();
+		expected.clear();
+		early.clear();
+		for (int i = 0; i < Agents.size(); i++) {
+			Algorithm alg = ((AgentThread) Agents.elementAt(i)).algorithm;
+			alg.synchronous = synchronousTrace;
+			if (alg.localAgentID != Master.masterID)
+				algs.put(Integer.valueOf(alg.localAgentID), alg);
+		}
+	}
+
+	/* replay the trace once, return the time it took (ms) */
+	public double replay() {
+		resetAgents();
+		long start = System.nanoTime();
+		Enumeration e = algs.elements();
+		while (e.hasMoreElements())
+			((Algorithm) e.nextElement()).setup();
+		for (int i = 0; i < records.size(); i++) {
+			Record r = (Record) records.elementAt(i);
+			switch (r.event) {
+			case TraceRecorder.SEND:
+				LinkedList q = queueOf(early, r.agent);
+				if (q.size() > 0)
+					compare(r.body, (byte[]) q.removeFirst());
+				else
+					queueOf(expected, r.agent).addLast(r.body);
+				break;
+			case TraceRecorder.DELIVER:
+				queueOf(batches, r.agent).addLast(MessageCodec.get(ByteBuffer.wrap(r.body)));
+				break;
+			case TraceRecorder.POLL:
+				Algorithm alg = (Algorithm) algs.get(Integer.valueOf(r.agent));
+				if (alg == null)
+					break;
+				alg.step();
+				numCycles++;
+				break;
+			}
+		}
+		return (System.nanoTime() - start) / 1000000.0;
+	}
+
+	/* an agent sends: compare with what it sent in the traced run */
+	public void sendMessage(Message m, int dest, boolean cntFlag) {
+		if (dest == Master.masterID)
+			return;
+		ByteBuffer b = ByteBuffer.allocate(MessageCodec.sizeOf(m));
+		MessageCodec.put(b, m);
+		LinkedList q = queueOf(expected, m.sourceAgent);
+		if (q.size() > 0)
+			compare((byte[]) q.removeFirst(), b.array());
+		else
+			queueOf(early, m.sourceAgent).addLast(b.array());
+	}
+
+	void compare(byte traced[], byte sent[]) {
+		if (Arrays.equals(traced, sent))
+			numMatched++;
+		else
+			numMismatched++;
+	}
+
+	/* number of messages left on the queues of 'h' */
+	static long numQueued(Hashtable h) {
+		long cnt = 0;
+		Enumeration e = h.elements();
+		while (e.hasMoreElements())
+			cnt += ((LinkedList) e.nextElement()).size();
+		return cnt;
+	}
+
+	/* an agent polls its mailbox: hand out this cycle's messages */
+	public Message getMessage(int agentID) {
+		LinkedList q = queueOf(batches, agentID);
+		if (q.size() == 0)
+			return null;
+		numDelivered++;
+		return (Message) q.removeFirst();
+	}
+
+	public Message waitMessage(int agentID, long timeout) {
+		return getMessage(agentID);
+	}
+
+	/* print what happened in the last replay */
+	public void report(double ms) {
+		int done = 0;
+		Enumeration e = algs.elements();
+		while (e.hasMoreElements()) {
+			if (((Algorithm) e.nextElement()).iWantToTerminate)
+				done++;
+		}
+		String s = "  Cycles replayed";
+		System.out.println(s + Instrumentation.fillerString(s) + " " + numCycles);
+		s = "  Msgs delivered";
+		System.out.println(s + Instrumentation.fillerString(s) + " " + numDelivered);
+		s = "  Sends (matched,differ,extra,missing)";
+		System.out.println(s + Instrumentation.fillerString(s) + " " + numMatched + " " + numMismatched + " "
+				+ numQueued(early) + " " + numQueued(expected));
+		s = "  Agents terminated";
+		System.out.println(s + Instrumentation.fillerString(s) + " " + done + "/" + algs.size());
+		s = "  Replay time (ms)";
+		System.out.println(s + Instrumentation.fillerString(s) + " " + ms);
+	}
+
+	public static void main(String argv[]) {
+		if (argv.length != 1 && argv.length != 2) {
+			System.out.println("Usage: TraceReplay <trace-file> [repeat]");
+			System.exit(0);
+		}
+		int repeat = 1;
+		if (argv.length == 2)
+			repeat = Integer.parseInt(argv[1]);
+		String header[] = new String[3];
+		Vector recs = null;
+		try {
+			recs = readTrace(argv[0], header);
+		} catch (IOException e) {
+			System.out.println("TraceReplay: " + e.getMessage());
+			System.exit(1);
+		}
+		long span = recs.size() == 0 ? 0 : ((Record) recs.lastElement()).time;
+		System.out.println("Replaying " + argv[0] + ": " + header[0] + " " + header[1] + " " + header[2] + ", "
+				+ recs.size() + " records, " + span / 1000.0 + " ms traced");
+
+		TraceReplay rp = new TraceReplay(header, recs);
+		rp.loadProblem();
+		double total = 0;
+		for (int i = 0; i < repeat; i++) {
+			rp.numCycles = rp.numDelivered = 0;
+			rp.numMatched = rp.numMismatched = 0;
+			double ms = rp.replay();
+			total += ms;
+			if (i == repeat - 1)
+				rp.report(ms);
+		}
+		if (repeat > 1) {
+			String s = "  Mean replay time (ms)";
+			System.out.println(s + Instrumentation.fillerString(s) + " " + total / repeat);
+		}
+		System.exit(rp.numMismatched + numQueued(rp.early) + numQueued(rp.expected) == 0 ? 0 : 1);
+	}
+}
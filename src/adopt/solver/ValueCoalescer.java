@@ -0,0 +1,73 @@
+/**********************************************************************
+ * File Name: ValueCoalescer.java
+ * Date: Oct 18 2026
+ *
+ * Lets a newer VALUE message from variable X to variable Y supersede
+ * any older one that has not been delivered yet.  A queue calls
+ * offered() when it enqueues a message and isStale() when it
+ * dequeues one; stale messages are dropped and counted.
+ *
+ * Enabled with -DAdoptCoalesce=true (default off).
+ **********************************************************************/
+
+package adopt.solver;
+
+import java.util.concurrent.atomic.*;
+
+public class ValueCoalescer {
+
+  /* is coalescing turned on? */
+  public static boolean enabled = "true".equals(System.getProperty("AdoptCoalesce"));
+
+  /* newest undelivered VALUE for each (sourceVar,destVar) link: an
+     AtomicReference per link, made when the link is first used */
+  LongMap latest = new LongMap();
+  /* number of messages dropped because a newer one was queued */
+  AtomicLong numSuperseded = new AtomicLong();
+
+  public ValueCoalescer(){
+  }
+
+  static long linkOf(Message m){
+    return ((long) m.sourceVar << 32) | (m.destVar & 0xffffffffL);
+  }
+
+  AtomicReference slotOf(Message m){
+    long link = linkOf(m);
+    AtomicReference r = (AtomicReference) latest.get(link);
+    if(r == null)
+      r = (AtomicReference) latest.putIfAbsent(link, new AtomicReference());
+    return r;
+  }
+
+  /* 'm' is about to be enqueued.  must be called before 'm' becomes
+     visible to the consumer.  only the owner of m.sourceVar sends on
+     a link, so there is a single writer per key. */
+  public void offered(Message m){
+    if(m.kind == Message.VALUE)
+      slotOf(m).set(m);
+  }
+
+  /* 'm' has just been dequeued.  returns true if a newer VALUE on the
+     same link has been offered since, in which case 'm' should be
+     dropped. */
+  public boolean isStale(Message m){
+    if(m.kind != Message.VALUE)
+      return false;
+    AtomicReference r = (AtomicReference) latest.get(linkOf(m));
+    if(r == null)
+      return false;
+    Object newest = r.get();
+    if(newest != null && newest != m){
+      numSuperseded.incrementAndGet();
+      return true;
+    }
+    /* delivered: forget it, unless something newer raced in */
+    r.compareAndSet(m, null);
+    return false;
+  }
+
+  public long numSuperseded(){
+    return numSuperseded.get();
+  }
+}
@@ -0,0 +1,26 @@
+/**
+  * Adopt VALUE message: the sender's current value, and the threshold
+  * it allocates to the receiver.
+  */
+
+package adopt.solver;
+
+public class ValueMessage extends Message {
+
+  public int threshold;
+  /* domain index of the sending variable's value */
+  public int value;
+
+  public ValueMessage (int destAgent, int sourceAgent, int destVar, 
+		       int threshold, int sourceVar, int value) {
+    super(VALUE, destAgent, sourceAgent, destVar, sourceVar);
+    this.threshold = threshold;
+    this.value = value;
+  }
+
+  /* Msg format: "VALUE  <destvariable> <THRESHOLD> <variable> <value> " */
+  public String rawMessage() { 
+    return Adopt.VALUE + " var" + destVar + " " + threshold 
+      + " var" + sourceVar + " " + value;
+  }
+}